@@ -25,14 +25,20 @@ public class MainActivity extends AppCompatActivity {
     progress1 = (ProgressView) findViewById(R.id.progress1);
     progress1.setStrokeSizeDp(this, 5);
     progress1.setStrokeColors(new int[] {Color.BLUE});
+    progress1.setAutoStart(false);
+    progress1.show();
 
     progress2 = (ProgressView) findViewById(R.id.progress2);
     progress2.setStrokeSizePx(15);
     progress2.setStrokeColors(new int[] {Color.BLUE, Color.RED, Color.GREEN, Color.YELLOW});
+    progress2.setAutoStart(false);
+    progress2.show();
 
     progress3 = (ProgressView) findViewById(R.id.progress3);
     progress3.setStrokeSizeDp(this, 5);
     progress3.setStrokeColors(new int[] {Color.BLUE});
+    progress3.setAutoStart(false);
+    progress3.show();
 
     progress4 = (ProgressView) findViewById(R.id.progress4);
     progress4.setStrokeSizePx(20);
@@ -51,15 +57,15 @@ public class MainActivity extends AppCompatActivity {
       @Override
       public void run() {
         if (isStart) {
-          progress1.stop();
-          progress2.stop();
-          progress3.stop();
+          progress1.hide();
+          progress2.hide();
+          progress3.hide();
           isStart = false;
           handler.postDelayed(this, 2000);
         } else {
-          progress1.start();
-          progress2.start();
-          progress3.start();
+          progress1.show();
+          progress2.show();
+          progress3.show();
           isStart = true;
           handler.postDelayed(this, 6000);
         }
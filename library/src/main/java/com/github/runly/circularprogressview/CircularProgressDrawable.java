@@ -1,15 +1,24 @@
 package com.github.runly.circularprogressview;
 
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Path;
+import android.graphics.PathMeasure;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.graphics.RectF;
+import android.graphics.SweepGradient;
 import android.graphics.drawable.Animatable;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Parcel;
 import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.util.AttributeSet;
@@ -21,6 +30,11 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
   private long mLastUpdateTime;
   private long mLastProgressStateTime;
   private long mLastRunStateTime;
+  private long mClockTime = -1;
+  private long mRotationStartTime;
+  private long mPauseTime = -1;
+  private long mLastTickTime = -1;
+  private FrameStats mFrameStats;
 
   private int mProgressState;
 
@@ -38,13 +52,46 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
   private static final int RUN_STATE_RUNNING = 3;
   private static final int RUN_STATE_STOPPING = 4;
 
+  private static final int INTRINSIC_SIZE_IN_STROKES = 6;
+  static final int FRAME_STATE_SIZE = 5;
+  // R.drawable.cpd_render_thread_ring strokes 4 units of its 48 unit viewport
+  private static final int RENDER_THREAD_SIZE_IN_STROKES = 12;
+
+  /**
+   * Measure the first frames and fall back to {@link #RENDER_TIER_LITE} when they are slow. On a
+   * hardware accelerated canvas only recording the frame is measured, not rasterizing it.
+   */
+  public static final int RENDER_TIER_AUTO = 0;
+  public static final int RENDER_TIER_FULL = 1;
+  /**
+   * Half the tick rate, no in-animation, and cheaper strokes for small rings.
+   */
+  public static final int RENDER_TIER_LITE = 2;
+
+  private static final int TIER_SAMPLE_FRAMES = 30;
+  private static final long TIER_LITE_DRAW_NANOS = 2000000;
+
+  public interface TrackShape {
+    /**
+     * Adds the closed track centered in the stroke to the empty path. It starts at 3 o'clock
+     * and runs clockwise, like the angles of a circular arc. Called only when the bounds, the
+     * stroke size or the shape change, the path is measured once and reused for every frame.
+     */
+    void buildTrack(RectF bounds, Path path);
+  }
+
   private Paint mPaint;
   private Paint mCircleBackgroundPaint;
   private Paint mCircleInsidePaint;
   private int mCircleInsideColor;
+  private Paint mSecondaryPaint;
+  private float mSecondaryAngle;
+  private int mPendingProgress = -1;
+  private int mPendingSecondaryProgress = -1;
   private RectF mRect;
   private float mStartAngle;
   private float mSweepAngle;
+  private float mAngleOffset;
   private int mStrokeColorIndex;
 
   private int mPadding;
@@ -66,6 +113,20 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
   private boolean mAutomaticallyRestart;
   private boolean mInverted;
   private Interpolator mTransformInterpolator;
+  private Drawable mRenderThreadDrawable;
+  private boolean mGradientStroke;
+  private SweepGradient mGradientShader;
+  private Matrix mGradientMatrix;
+  private boolean mLite;
+  private int mLiteRingMaxSize;
+  private TrackShape mTrackShape;
+  private Path mTrackPath;
+  private PathMeasure mTrackMeasure;
+  private float mTrackLength;
+  private RectF mTrackBounds;
+  private Path mSegmentPath;
+  private int mTierSamples;
+  private long mTierSampleNanos;
 
   private CircularProgressDrawable(int padding, float initialAngle, float maxSweepAngle, float minSweepAngle,
                                    int strokeSize, int[] strokeColors, boolean reverse,
@@ -73,7 +134,10 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
                                    Interpolator transformInterpolator, int progressMode, int inAnimDuration,
                                    float inStepPercent, int[] inStepColors, int outAnimDuration,
                                    boolean keepDeterminateProgress, boolean automaticallyRestart,
-                                   int circleBackgroundColor, boolean inverted, int circleInsideColor) {
+                                   int circleBackgroundColor, boolean inverted, int circleInsideColor,
+                                   Drawable renderThreadDrawable, boolean gradientStroke,
+                                   int renderTier, int liteRingMaxSize, TrackShape trackShape,
+                                   int strokeSecondaryColor) {
     mPadding = padding;
     mInitialAngle = initialAngle;
     mMaxSweepAngle = maxSweepAngle;
@@ -109,12 +173,200 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
     mCircleInsidePaint.setAntiAlias(true);
     mCircleInsidePaint.setColor(circleInsideColor);
 
+    mSecondaryPaint = new Paint();
+    mSecondaryPaint.setAntiAlias(true);
+    mSecondaryPaint.setStrokeCap(Paint.Cap.ROUND);
+    mSecondaryPaint.setStrokeJoin(Paint.Join.ROUND);
+    mSecondaryPaint.setColor(strokeSecondaryColor);
+
     mRect = new RectF();
+
+    mGradientStroke = gradientStroke;
+    mGradientMatrix = new Matrix();
+
+    mLiteRingMaxSize = liteRingMaxSize;
+    setRenderTier(renderTier);
+
+    mTrackShape = trackShape;
+    mTrackPath = new Path();
+    mTrackMeasure = new PathMeasure();
+    mTrackBounds = new RectF();
+    mSegmentPath = new Path();
+
+    mRenderThreadDrawable = renderThreadDrawable;
+    if (mRenderThreadDrawable != null) {
+      mRenderThreadDrawable.setCallback(mRenderThreadCallback);
+    }
+  }
+
+  /**
+   * Whether this drawable runs as an AnimatedVectorDrawable on the RenderThread instead of the
+   * {@link #mUpdater} loop, see {@link Builder#renderThreadPreset(boolean)}.
+   */
+  public boolean isRenderThreadAnimated() {
+    return mRenderThreadDrawable != null;
+  }
+
+  int getProgressMode() {
+    return mProgressMode;
+  }
+
+  /**
+   * The vector strokes a fixed part of its size, other stroke sizes can't be drawn on the
+   * RenderThread.
+   */
+  private boolean matchesRenderThreadStroke(Rect bounds) {
+    int size = Math.min(bounds.width(), bounds.height()) - mPadding * 2;
+    return size <= 0 || Math.round(size / (float) RENDER_THREAD_SIZE_IN_STROKES) == mStrokeSize;
+  }
+
+  /**
+   * Hands the animation back to the {@link #mUpdater} loop for good, a running drawable keeps
+   * running there without in-animation.
+   */
+  private void leaveRenderThread() {
+    if (mRenderThreadDrawable == null) {
+      return;
+    }
+
+    boolean running = isRunning();
+    if (running) {
+      stop(false);
+    }
+    mRenderThreadDrawable.setCallback(null);
+    mRenderThreadDrawable = null;
+    if (running) {
+      start(false);
+    }
+    invalidateSelf();
   }
 
   @Override
   public void draw(@NonNull Canvas canvas) {
-    drawIndeterminate(canvas);
+    if (mRenderThreadDrawable != null) {
+      if (mRunState != RUN_STATE_STOPPED) {
+        mRenderThreadDrawable.draw(canvas);
+      }
+      return;
+    }
+
+    boolean traced = TraceUtil.isEnabled();
+    if (traced) {
+      TraceUtil.beginSection(TraceUtil.drawSection(mProgressMode, mRunState));
+    }
+    boolean timed = mFrameStats != null || mTierSamples < TIER_SAMPLE_FRAMES;
+    long drawStart = timed ? System.nanoTime() : 0;
+    try {
+      drawIndeterminate(canvas);
+    } finally {
+      if (traced) {
+        TraceUtil.endSection();
+      }
+    }
+
+    if (timed) {
+      long duration = System.nanoTime() - drawStart;
+      if (mFrameStats != null) {
+        mFrameStats.recordDraw(duration);
+        FrameStats.global().recordDraw(duration);
+      }
+      if (mTierSamples < TIER_SAMPLE_FRAMES) {
+        sampleRenderTier(duration);
+      }
+    }
+  }
+
+  /**
+   * {@link #RENDER_TIER_AUTO} drops to {@link #RENDER_TIER_LITE} when the first frames are slow.
+   * The time spans draw() only: on a hardware accelerated canvas that is recording the display
+   * list, the anti-aliased raster cost on the RenderThread isn't part of it. It catches slow
+   * software canvases and slow recording, not every device where the lite tier would help.
+   */
+  private void sampleRenderTier(long drawNanos) {
+    // the in-animation draws a stack of rings, only time the regular frames
+    if (mRunState != RUN_STATE_STARTED && mRunState != RUN_STATE_RUNNING) {
+      return;
+    }
+
+    mTierSamples++;
+    mTierSampleNanos += drawNanos;
+    if (mTierSamples == TIER_SAMPLE_FRAMES && mTierSampleNanos / TIER_SAMPLE_FRAMES > TIER_LITE_DRAW_NANOS) {
+      mLite = true;
+      applyRenderTier();
+    }
+  }
+
+  /**
+   * @param tier {@link #RENDER_TIER_AUTO}, {@link #RENDER_TIER_FULL} or {@link #RENDER_TIER_LITE}
+   */
+  public void setRenderTier(int tier) {
+    mLite = tier == RENDER_TIER_LITE;
+    mTierSamples = tier == RENDER_TIER_AUTO ? 0 : TIER_SAMPLE_FRAMES;
+    mTierSampleNanos = 0;
+    applyRenderTier();
+  }
+
+  /**
+   * @return the tier in use, {@link #RENDER_TIER_FULL} or {@link #RENDER_TIER_LITE}
+   */
+  public int getRenderTier() {
+    return mLite ? RENDER_TIER_LITE : RENDER_TIER_FULL;
+  }
+
+  private boolean isLite() {
+    return mLite;
+  }
+
+  /**
+   * The lite tier skips the in-animation, shaped tracks have no ring stack to draw during it.
+   */
+  private boolean hasInAnimation() {
+    return mInAnimationDuration > 0 && !isLite() && mTrackShape == null;
+  }
+
+  private long getFrameDuration() {
+    return mLite ? ViewUtil.FRAME_DURATION * 2 : ViewUtil.FRAME_DURATION;
+  }
+
+  /**
+   * Small lite rings draw without anti-aliasing and round caps, the difference hardly shows at
+   * that size.
+   */
+  private void applyRenderTier() {
+    Rect bounds = getBounds();
+    boolean cheap = mLite && Math.min(bounds.width(), bounds.height()) < mLiteRingMaxSize;
+    Paint.Cap cap = cheap ? Paint.Cap.BUTT : Paint.Cap.ROUND;
+    Paint.Join join = cheap ? Paint.Join.MITER : Paint.Join.ROUND;
+    mPaint.setAntiAlias(!cheap);
+    mPaint.setStrokeCap(cap);
+    mPaint.setStrokeJoin(join);
+    mCircleBackgroundPaint.setAntiAlias(!cheap);
+    mCircleBackgroundPaint.setStrokeCap(cap);
+    mCircleBackgroundPaint.setStrokeJoin(join);
+    mSecondaryPaint.setAntiAlias(!cheap);
+    mSecondaryPaint.setStrokeCap(cap);
+    mSecondaryPaint.setStrokeJoin(join);
+    mCircleInsidePaint.setAntiAlias(!cheap);
+    invalidateSelf();
+  }
+
+  @Override
+  protected void onBoundsChange(Rect bounds) {
+    super.onBoundsChange(bounds);
+    updateGradientShader();
+    updateTrack();
+    if (mLite) {
+      applyRenderTier();
+    }
+    if (mRenderThreadDrawable != null && !matchesRenderThreadStroke(bounds)) {
+      leaveRenderThread();
+    }
+    if (mRenderThreadDrawable != null) {
+      int size = Math.min(bounds.width(), bounds.height()) - mPadding * 2;
+      int left = bounds.left + (bounds.width() - size) / 2;
+      int top = bounds.top + (bounds.height() - size) / 2;
+      mRenderThreadDrawable.setBounds(left, top, left + size, top + size);
+    }
   }
 
   private int getIndeterminateStrokeColor() {
@@ -122,13 +374,128 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
       return mStrokeColors[mStrokeColorIndex];
     }
 
-    float value = Math.max(0f, Math.min(1f, (float) (SystemClock.uptimeMillis() - mLastProgressStateTime) / mKeepDuration));
+    float value = Math.max(0f, Math.min(1f, (float) (now() - mLastProgressStateTime) / mKeepDuration));
     int prev_index = mStrokeColorIndex == 0 ? mStrokeColors.length - 1 : mStrokeColorIndex - 1;
 
     return ColorUtil.getMiddleColor(mStrokeColors[prev_index], mStrokeColors[mStrokeColorIndex], value);
   }
 
+  /**
+   * Solid strokes blend {@link #mStrokeColors} per frame, gradient strokes only rotate the shader
+   * built for the current bounds so that it starts at the tail cap of an arc from
+   * {@code startAngle}. Call it after setting {@link #mRect} and the stroke width.
+   */
+  private void setStrokePaint(float startAngle) {
+    if (mGradientShader == null) {
+      mPaint.setColor(getIndeterminateStrokeColor());
+      return;
+    }
+
+    Rect bounds = getBounds();
+    float x = (bounds.left + bounds.right) / 2f;
+    float y = (bounds.top + bounds.bottom) / 2f;
+    // a round cap reaches back before the start, it has to sample the start of the gradient too
+    float radius = mRect.width() / 2;
+    if (mPaint.getStrokeCap() == Paint.Cap.ROUND && radius > 0) {
+      float capAngle = (float) Math.toDegrees(mPaint.getStrokeWidth() / 2 / radius);
+      startAngle += mReverse ? capAngle : -capAngle;
+    }
+    mGradientMatrix.setRotate(startAngle, x, y);
+    if (mReverse) {
+      // counter-clockwise arcs run the gradient the other way round
+      mGradientMatrix.preScale(1, -1, x, y);
+    }
+    mGradientShader.setLocalMatrix(mGradientMatrix);
+    mPaint.setColor(Color.BLACK);
+    mPaint.setShader(mGradientShader);
+  }
+
+  /**
+   * One shader per bounds and colors, a single color fades in from transparent.
+   */
+  private void updateGradientShader() {
+    if (!mGradientStroke) {
+      return;
+    }
+
+    Rect bounds = getBounds();
+    int[] colors = mStrokeColors;
+    if (colors.length == 1) {
+      colors = new int[] {colors[0] & 0x00FFFFFF, colors[0]};
+    }
+    mGradientShader = new SweepGradient((bounds.left + bounds.right) / 2f, (bounds.top + bounds.bottom) / 2f, colors, null);
+  }
+
+  /**
+   * Draws the part of the track between the angles, an arc of {@link #mRect} for the circle.
+   * Other shapes map the angles linearly onto the length of the measured track path.
+   */
+  private void drawTrack(Canvas canvas, float startAngle, float sweepAngle, Paint paint) {
+    if (mTrackShape == null) {
+      canvas.drawArc(mRect, startAngle, sweepAngle, false, paint);
+      return;
+    }
+
+    if (Math.abs(sweepAngle) >= 360) {
+      canvas.drawPath(mTrackPath, paint);
+      return;
+    }
+
+    if (sweepAngle < 0) {
+      startAngle += sweepAngle;
+      sweepAngle = -sweepAngle;
+    }
+    float start = normalizeAngle(startAngle) / 360 * mTrackLength;
+    float end = start + sweepAngle / 360 * mTrackLength;
+
+    mSegmentPath.rewind();
+    if (end <= mTrackLength) {
+      mTrackMeasure.getSegment(start, end, mSegmentPath, true);
+    } else {
+      // wraps around the start of the closed track, continue the same contour
+      mTrackMeasure.getSegment(start, mTrackLength, mSegmentPath, true);
+      mTrackMeasure.getSegment(0, end - mTrackLength, mSegmentPath, false);
+    }
+    if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.KITKAT) {
+      // the segment may not show on a hardware accelerated canvas otherwise, see getSegment()
+      mSegmentPath.rLineTo(0, 0);
+    }
+    canvas.drawPath(mSegmentPath, paint);
+  }
+
+  /**
+   * Measures the track once per bounds, stroke or shape change, centered on the stroke.
+   */
+  private void updateTrack() {
+    if (mTrackShape == null) {
+      return;
+    }
+
+    Rect bounds = getBounds();
+    float inset = mPadding + mStrokeSize / 2f;
+    mTrackBounds.set(bounds.left + inset, bounds.top + inset, bounds.right - inset, bounds.bottom - inset);
+    mTrackPath.rewind();
+    mTrackShape.buildTrack(mTrackBounds, mTrackPath);
+    mTrackMeasure.setPath(mTrackPath, true);
+    mTrackLength = mTrackMeasure.getLength();
+  }
+
+  /**
+   * Draw along a shaped track instead of a circle, null for the circle. A shape moves a RenderThread
+   * animation back to the regular renderer.
+   */
+  public void setTrackShape(TrackShape trackShape) {
+    mTrackShape = trackShape;
+    if (mTrackShape != null) {
+      leaveRenderThread();
+    }
+    updateTrack();
+    invalidateSelf();
+  }
+
   private void drawIndeterminate(Canvas canvas) {
+    // the in-animation rings are solid, the gradient is set again for the stroke
+    mPaint.setShader(null);
     if (mRunState == RUN_STATE_STARTING) {
       Rect bounds = getBounds();
       float x = (bounds.left + bounds.right) / 2f;
@@ -136,35 +503,38 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
       float maxRadius = (Math.min(bounds.width(), bounds.height()) - mPadding * 2) / 2f;
 
       float stepTime = 1f / (mInStepPercent * (mInColors.length + 2) + 1);
-      float time = (float) (SystemClock.uptimeMillis() - mLastRunStateTime) / mInAnimationDuration;
+      float time = (float) (now() - mLastRunStateTime) / mInAnimationDuration;
       float steps = time / stepTime;
 
       float outerRadius = 0f;
       float innerRadius = 0f;
 
-      for (int i = (int) Math.floor(steps); i >= 0; i--) {
-        innerRadius = outerRadius;
-        outerRadius = Math.min(1f, (steps - i) * mInStepPercent) * maxRadius;
-
-        if (i >= mInColors.length) {
-          continue;
-        }
-
-        if (innerRadius == 0) {
-          mPaint.setColor(mInColors[i]);
-          mPaint.setStyle(Paint.Style.FILL);
-          canvas.drawCircle(x, y, outerRadius, mPaint);
-        } else if (outerRadius > innerRadius) {
-          float radius = (innerRadius + outerRadius) / 2;
-          mRect.set(x - radius, y - radius, x + radius, y + radius);
+      // the ring stack is circular, shaped tracks only show the stroke
+      if (mTrackShape == null) {
+        for (int i = (int) Math.floor(steps); i >= 0; i--) {
+          innerRadius = outerRadius;
+          outerRadius = Math.min(1f, (steps - i) * mInStepPercent) * maxRadius;
 
-          mPaint.setStrokeWidth(outerRadius - innerRadius);
-          mPaint.setStyle(Paint.Style.STROKE);
-          mPaint.setColor(mInColors[i]);
+          if (i >= mInColors.length) {
+            continue;
+          }
 
-          canvas.drawCircle(x, y, radius, mPaint);
-        } else {
-          break;
+          if (innerRadius == 0) {
+            mPaint.setColor(mInColors[i]);
+            mPaint.setStyle(Paint.Style.FILL);
+            canvas.drawCircle(x, y, outerRadius, mPaint);
+          } else if (outerRadius > innerRadius) {
+            float radius = (innerRadius + outerRadius) / 2;
+            mRect.set(x - radius, y - radius, x + radius, y + radius);
+
+            mPaint.setStrokeWidth(outerRadius - innerRadius);
+            mPaint.setStyle(Paint.Style.STROKE);
+            mPaint.setColor(mInColors[i]);
+
+            canvas.drawCircle(x, y, radius, mPaint);
+          } else {
+            break;
+          }
         }
       }
 
@@ -179,12 +549,12 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
         mRect.set(x - radius, y - radius, x + radius, y + radius);
         mPaint.setStrokeWidth(mStrokeSize);
         mPaint.setStyle(Paint.Style.STROKE);
-        mPaint.setColor(getIndeterminateStrokeColor());
+        setStrokePaint(mStartAngle);
 
-        canvas.drawArc(mRect, mStartAngle, mSweepAngle, false, mPaint);
+        drawTrack(canvas, mStartAngle, mSweepAngle, mPaint);
       }
     } else if (mRunState == RUN_STATE_STOPPING) {
-      float size = (float) mStrokeSize * Math.max(0, (mOutAnimationDuration - SystemClock.uptimeMillis() + mLastRunStateTime)) / mOutAnimationDuration;
+      float size = (float) mStrokeSize * Math.max(0, (mOutAnimationDuration - now() + mLastRunStateTime)) / mOutAnimationDuration;
 
       if (size > 0) {
         Rect bounds = getBounds();
@@ -195,9 +565,9 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
         mRect.set(x - radius, y - radius, x + radius, y + radius);
         mPaint.setStrokeWidth(size);
         mPaint.setStyle(Paint.Style.STROKE);
-        mPaint.setColor(getIndeterminateStrokeColor());
+        setStrokePaint(mStartAngle);
 
-        canvas.drawArc(mRect, mStartAngle, mSweepAngle, false, mPaint);
+        drawTrack(canvas, mStartAngle, mSweepAngle, mPaint);
       }
     } else if (mRunState != RUN_STATE_STOPPED) {
       Rect bounds = getBounds();
@@ -205,33 +575,84 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
       float x = (bounds.left + bounds.right) / 2f;
       float y = (bounds.top + bounds.bottom) / 2f;
 
-      canvas.drawCircle(mRect.centerX(), mRect.centerY(), radius, mCircleInsidePaint);
+      if (mTrackShape == null) {
+        canvas.drawCircle(mRect.centerX(), mRect.centerY(), radius, mCircleInsidePaint);
+      } else {
+        canvas.drawPath(mTrackPath, mCircleInsidePaint);
+      }
       mRect.set(x - radius, y - radius, x + radius, y + radius);
       mPaint.setStrokeWidth(mStrokeSize);
       mPaint.setStyle(Paint.Style.STROKE);
-      mPaint.setColor(getIndeterminateStrokeColor());
       mCircleBackgroundPaint.setStrokeWidth(mStrokeSize);
       mCircleBackgroundPaint.setStyle(Paint.Style.STROKE);
-      canvas.drawArc(mRect, 0, 360, false, mCircleBackgroundPaint);
+      drawTrack(canvas, 0, 360, mCircleBackgroundPaint);
+      // the buffered arc lies on the track under the progress, in the same pass
+      if (mProgressMode == ProgressView.MODE_DETERMINATE && mSecondaryAngle != 0
+          && Color.alpha(mSecondaryPaint.getColor()) != 0) {
+        float endAngle = mSecondaryAngle;
+        if (mInverted) {
+          endAngle += mReverse ? 360 : -360;
+        }
+        mSecondaryPaint.setStrokeWidth(mStrokeSize);
+        mSecondaryPaint.setStyle(Paint.Style.STROKE);
+        drawTrack(canvas, mReverse ? 270 : -90, endAngle, mSecondaryPaint);
+      }
       if (mProgressMode == ProgressView.MODE_DETERMINATE && mKeepDeterminateProgress) {
         float endAngle = mStartAngle;
         if (mInverted) {
           endAngle += mReverse ? 360 : -360;
         }
         int startAngle = mReverse ? 270 : -90;
-        canvas.drawArc(mRect, startAngle, endAngle, false, mPaint);
+        setStrokePaint(startAngle);
+        drawTrack(canvas, startAngle, endAngle, mPaint);
       } else {
-        canvas.drawArc(mRect, mStartAngle, mSweepAngle, false, mPaint);
+        setStrokePaint(mStartAngle);
+        drawTrack(canvas, mStartAngle, mSweepAngle, mPaint);
       }
     }
   }
 
+  /**
+   * Redraws with the new stroke, the intrinsic size changes only for the next layout. A stroke
+   * size the RenderThread vector can't draw moves the animation back to the regular renderer.
+   */
   public void setStrokeSize(int mStrokeSize) {
     this.mStrokeSize = mStrokeSize;
+    if (mRenderThreadDrawable != null && !matchesRenderThreadStroke(getBounds())) {
+      leaveRenderThread();
+    }
+    updateTrack();
+    invalidateSelf();
   }
 
+  /**
+   * On the RenderThread a single color tints the vector, more colors move the animation back to
+   * the regular renderer.
+   */
   public void setStrokeColors(int[] mStrokeColors) {
     this.mStrokeColors = mStrokeColors;
+    if (mRenderThreadDrawable != null) {
+      if (mStrokeColors.length == 1 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+        mRenderThreadDrawable.setTint(mStrokeColors[0]);
+      } else {
+        leaveRenderThread();
+      }
+    }
+    updateGradientShader();
+    invalidateSelf();
+  }
+
+  /**
+   * A ring of two strokes around a hole four strokes wide, plus the padding.
+   */
+  @Override
+  public int getIntrinsicWidth() {
+    return mPadding * 2 + mStrokeSize * INTRINSIC_SIZE_IN_STROKES;
+  }
+
+  @Override
+  public int getIntrinsicHeight() {
+    return getIntrinsicWidth();
   }
 
   public void setInitialProgress(int progress) {
@@ -239,21 +660,89 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
       throw new IllegalStateException("Set progress is allowed only in determinate progress views");
     }
 
-    mInitialAngle = ((progress * 360) / 100) % 360;
-    if (mReverse) {
-      mInitialAngle *= -1;
-    }
+    mInitialAngle = progressToAngle(progress) % 360;
     resetAnimation();
+    invalidateSelf();
+  }
+
+  /**
+   * Moves the determinate progress without resetting the animation. Calls between two ticks are
+   * coalesced, only the last value is applied on the next tick.
+   */
+  public void setProgress(int progress) {
+    if (mProgressMode != ProgressView.MODE_DETERMINATE) {
+      throw new IllegalStateException("Set progress is allowed only in determinate progress views");
+    }
+
+    mPendingProgress = Math.max(0, Math.min(100, progress));
+    applyPendingProgressIfIdle();
+  }
+
+  /**
+   * The buffered value drawn from the top in {@code cpd_strokeSecondaryColor} under the progress,
+   * coalesced like {@link #setProgress(int)}.
+   */
+  public void setSecondaryProgress(int secondaryProgress) {
+    if (mProgressMode != ProgressView.MODE_DETERMINATE) {
+      throw new IllegalStateException("Set progress is allowed only in determinate progress views");
+    }
+
+    mPendingSecondaryProgress = Math.max(0, Math.min(100, secondaryProgress));
+    applyPendingProgressIfIdle();
+  }
+
+  public void setStrokeSecondaryColor(int color) {
+    mSecondaryPaint.setColor(color);
+    invalidateSelf();
+  }
+
+  /**
+   * Without a tick coming, a stopped or paused drawable takes the values at once.
+   */
+  private void applyPendingProgressIfIdle() {
+    if (isRunning() && !isPaused()) {
+      return;
+    }
+
+    applyPendingProgress(now());
+    mStartAngle = mInitialAngle;
+    invalidateSelf();
+  }
+
+  /**
+   * The rotation is rebased onto the new progress, the rest of the animation state is kept.
+   */
+  private void applyPendingProgress(long curTime) {
+    if (mPendingProgress >= 0) {
+      mInitialAngle = progressToAngle(mPendingProgress) % 360;
+      mRotationStartTime = curTime;
+      mPendingProgress = -1;
+    }
+    if (mPendingSecondaryProgress >= 0) {
+      mSecondaryAngle = progressToAngle(mPendingSecondaryProgress);
+      mPendingSecondaryProgress = -1;
+    }
+  }
+
+  private float progressToAngle(int progress) {
+    float angle = (progress * 360) / 100;
+    return mReverse ? -angle : angle;
   }
 
   @Override
   public void setAlpha(int alpha) {
     mPaint.setAlpha(alpha);
+    if (mRenderThreadDrawable != null) {
+      mRenderThreadDrawable.setAlpha(alpha);
+    }
   }
 
   @Override
   public void setColorFilter(ColorFilter cf) {
     mPaint.setColorFilter(cf);
+    if (mRenderThreadDrawable != null) {
+      mRenderThreadDrawable.setColorFilter(cf);
+    }
   }
 
   @Override
@@ -261,9 +750,74 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
     return PixelFormat.TRANSLUCENT;
   }
 
+  /**
+   * Record ticks, drawn frames and their cost of this drawable, also counted in
+   * {@link FrameStats#globalSnapshot()}. Off by default.
+   */
+  public void setFrameStatsEnabled(boolean enabled) {
+    if (!enabled) {
+      mFrameStats = null;
+    } else if (mFrameStats == null) {
+      mFrameStats = new FrameStats();
+      mLastTickTime = -1;
+    }
+  }
+
+  /**
+   * @return a snapshot of this drawable's frame stats, or null when they are not enabled.
+   */
+  public FrameStats getFrameStats() {
+    return mFrameStats != null ? mFrameStats.snapshot() : null;
+  }
+
+  /**
+   * Pins the animation clock to {@code uptimeMillis}, or back to {@link SystemClock#uptimeMillis()}
+   * with a negative value. Used to update and draw frames at a chosen time.
+   */
+  void setClockTime(long uptimeMillis) {
+    mClockTime = uptimeMillis;
+  }
+
+  private long clockTime() {
+    return mClockTime >= 0 ? mClockTime : SystemClock.uptimeMillis();
+  }
+
+  /**
+   * The animation time, which stands still while paused.
+   */
+  private long now() {
+    return mPauseTime >= 0 ? mPauseTime : clockTime();
+  }
+
+  /**
+   * Fills {@code out} with the visible state: run state, start, sweep and secondary angle
+   * quantized to {@code angleStep} degrees and stroke color. Frames with equal states while
+   * {@link #isFrameStateStable()} draw the same pixels.
+   */
+  void getFrameState(float angleStep, int[] out) {
+    out[0] = mRunState;
+    out[1] = Math.round(mStartAngle / angleStep);
+    out[2] = Math.round(mSweepAngle / angleStep);
+    out[3] = getIndeterminateStrokeColor();
+    out[4] = Math.round(mSecondaryAngle / angleStep);
+  }
+
+  float getStartAngle() {
+    return mStartAngle;
+  }
+
+  /**
+   * In- and out-animations change every frame regardless of the angles.
+   */
+  boolean isFrameStateStable() {
+    return mRunState != RUN_STATE_STARTING && mRunState != RUN_STATE_STOPPING;
+  }
+
   private void resetAnimation() {
-    mLastUpdateTime = SystemClock.uptimeMillis();
+    mLastUpdateTime = now();
     mLastProgressStateTime = mLastUpdateTime;
+    mRotationStartTime = mLastUpdateTime;
+    mAngleOffset = 0;
     mStartAngle = mInitialAngle;
     mStrokeColorIndex = 0;
     mSweepAngle = mReverse ? -mMinSweepAngle : mMinSweepAngle;
@@ -271,7 +825,7 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
 
   @Override
   public void start() {
-    start(mInAnimationDuration > 0);
+    start(hasInAnimation());
   }
 
   @Override
@@ -284,37 +838,239 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
       return;
     }
 
+    TraceUtil.onRunningChanged(1);
+    // the first tick after a start is not late, whatever the time since the last run
+    mLastTickTime = -1;
+    if (mRenderThreadDrawable != null) {
+      mRunState = RUN_STATE_RUNNING;
+      mRenderThreadDrawable.setVisible(true, true);
+      ((Animatable) mRenderThreadDrawable).start();
+      invalidateSelf();
+      return;
+    }
+
     resetAnimation();
 
     if (withAnimation) {
       mRunState = RUN_STATE_STARTING;
-      mLastRunStateTime = SystemClock.uptimeMillis();
+      mLastRunStateTime = now();
       mProgressState = PROGRESS_STATE_HIDE;
     }
 
-    scheduleSelf(mUpdater, SystemClock.uptimeMillis() + ViewUtil.FRAME_DURATION);
+    scheduleSelf(mUpdater, clockTime() + getFrameDuration());
     invalidateSelf();
   }
 
-  private void stop(boolean withAnimation) {
+  void stop(boolean withAnimation) {
     if (!isRunning()) {
       return;
     }
 
+    if (isPaused()) {
+      resume();
+    }
+
+    if (mRenderThreadDrawable != null) {
+      // the vector animation has no out-animation, hide the ring once it is stopped
+      mRunState = RUN_STATE_STOPPED;
+      TraceUtil.onRunningChanged(-1);
+      ((Animatable) mRenderThreadDrawable).stop();
+      mRenderThreadDrawable.setVisible(false, false);
+      invalidateSelf();
+      return;
+    }
+
     if (withAnimation) {
-      mLastRunStateTime = SystemClock.uptimeMillis();
+      mLastRunStateTime = now();
       if (mRunState == RUN_STATE_STARTED) {
-        scheduleSelf(mUpdater, SystemClock.uptimeMillis() + ViewUtil.FRAME_DURATION);
+        scheduleSelf(mUpdater, clockTime() + getFrameDuration());
         invalidateSelf();
       }
       mRunState = RUN_STATE_STOPPING;
     } else {
       mRunState = RUN_STATE_STOPPED;
+      TraceUtil.onRunningChanged(-1);
       unscheduleSelf(mUpdater);
       invalidateSelf();
     }
   }
 
+  /**
+   * Halts the animation at its current phase without an out-animation, nothing is scheduled until
+   * {@link #resume()}. Stopping a paused drawable resumes it first.
+   */
+  public void pause() {
+    if (!isRunning() || isPaused() || mRenderThreadDrawable != null) {
+      return;
+    }
+
+    mPauseTime = clockTime();
+    unscheduleSelf(mUpdater);
+  }
+
+  /**
+   * Continues from the phase {@link #pause()} left off, without an in-animation.
+   */
+  public void resume() {
+    if (!isPaused()) {
+      return;
+    }
+
+    long pausedTime = clockTime() - mPauseTime;
+    mPauseTime = -1;
+    mLastUpdateTime += pausedTime;
+    mLastProgressStateTime += pausedTime;
+    mLastRunStateTime += pausedTime;
+    mRotationStartTime += pausedTime;
+    // the pause is not a late tick
+    mLastTickTime = -1;
+
+    scheduleSelf(mUpdater, clockTime() + getFrameDuration());
+    invalidateSelf();
+  }
+
+  public boolean isPaused() {
+    return mPauseTime >= 0;
+  }
+
+  /**
+   * Jumps over the whole stretch, keep, shrink, keep cycles before {@code time} in closed form,
+   * each moves the arc by what its last shrink tick leaves and advances the stroke color.
+   *
+   * @return the time from which at most one cycle is left to replay frame by frame.
+   */
+  private long skipCycles(long start, long time) {
+    long transform = getPhaseDuration(mTransformDuration);
+    long cycle = 2 * (transform + getPhaseDuration(mKeepDuration));
+    if (time - start < cycle) {
+      return start;
+    }
+
+    long cycles = (time - start) / cycle;
+    if (mTransformDuration > 0) {
+      // the shrink ends on the first tick past its duration, the interpolation overshoots there
+      float value = mTransformInterpolator.getInterpolation(transform / (float) mTransformDuration);
+      double growth = value * (mReverse ? mMinSweepAngle - mMaxSweepAngle : mMaxSweepAngle - mMinSweepAngle);
+      mAngleOffset = normalizeAngle((float) ((cycles * growth) % 360));
+    }
+    mStrokeColorIndex = (int) (cycles % mStrokeColors.length);
+    long skipped = start + cycles * cycle;
+    mLastUpdateTime = skipped;
+    mLastProgressStateTime = skipped;
+    return skipped;
+  }
+
+  /**
+   * A progress state ends on the first tick after its duration, so it lasts a whole number of
+   * frames, at least one.
+   */
+  private static long getPhaseDuration(int duration) {
+    return (Math.max(0, duration) / ViewUtil.FRAME_DURATION + 1) * ViewUtil.FRAME_DURATION;
+  }
+
+  /**
+   * The state of the last frame, {@link #restoreAnimationState(AnimationState)} draws that frame
+   * again and continues from it. The times are relative to the frame, not to the clock.
+   */
+  AnimationState saveAnimationState() {
+    AnimationState state = new AnimationState();
+    state.progressState = mRunState == RUN_STATE_STARTING ? PROGRESS_STATE_HIDE : mProgressState;
+    state.stateTime = mLastUpdateTime - mLastProgressStateTime;
+    state.rotationTime = mLastUpdateTime - mRotationStartTime;
+    state.startAngle = mStartAngle;
+    state.sweepAngle = mSweepAngle;
+    state.angleOffset = mAngleOffset;
+    state.strokeColorIndex = mStrokeColorIndex;
+    return state;
+  }
+
+  /**
+   * Continues a saved animation without in-animation, a stopped drawable is started. State saved
+   * during the in-animation starts over at its end.
+   */
+  void restoreAnimationState(AnimationState state) {
+    if (mRenderThreadDrawable != null) {
+      return;
+    }
+
+    boolean wasRunning = isRunning();
+    if (!wasRunning) {
+      TraceUtil.onRunningChanged(1);
+      mLastTickTime = -1;
+    }
+
+    resetAnimation();
+    mRunState = RUN_STATE_RUNNING;
+    mLastRunStateTime = mLastUpdateTime;
+    mProgressState = PROGRESS_STATE_STRETCH;
+    if (state.progressState != PROGRESS_STATE_HIDE) {
+      mProgressState = state.progressState;
+      mLastProgressStateTime = mLastUpdateTime - state.stateTime;
+      mRotationStartTime = mLastUpdateTime - state.rotationTime;
+      mStartAngle = state.startAngle;
+      mSweepAngle = state.sweepAngle;
+      mAngleOffset = state.angleOffset;
+      mStrokeColorIndex = state.strokeColorIndex % mStrokeColors.length;
+    }
+
+    if (!wasRunning) {
+      scheduleSelf(mUpdater, clockTime() + getFrameDuration());
+    }
+    invalidateSelf();
+  }
+
+  /**
+   * The phase of a running animation in ms, {@link #seekTo(long)} returns to it.
+   */
+  public long getPlayTime() {
+    return isRunning() ? now() - mRotationStartTime : 0;
+  }
+
+  /**
+   * Moves the animation to the frame a drawable started without in-animation shows {@code timeMs}
+   * later, ticking every {@link ViewUtil#FRAME_DURATION}. Whole sweep cycles are skipped in closed
+   * form and at most one is stepped through frame by frame, so the cost is bounded however far
+   * the seek goes. A real loop with late ticks, or the lite tier's longer frames, can end up
+   * slightly apart. A stopped drawable is started paused at that phase.
+   */
+  public void seekTo(long timeMs) {
+    if (mRenderThreadDrawable != null) {
+      return;
+    }
+
+    if (!isRunning()) {
+      TraceUtil.onRunningChanged(1);
+      mLastTickTime = -1;
+      mRunState = RUN_STATE_RUNNING;
+      mPauseTime = clockTime();
+    }
+
+    long time = now();
+    long pauseTime = mPauseTime;
+    long clockTime = mClockTime;
+    mPauseTime = -1;
+    long start = time - Math.max(0, Math.min(timeMs, time));
+    mClockTime = start;
+    resetAnimation();
+    mRunState = RUN_STATE_RUNNING;
+    mLastRunStateTime = start;
+    mProgressState = PROGRESS_STATE_STRETCH;
+    // the determinate state is a function of the time, only the sweep cycle is replayed
+    if (mProgressMode == ProgressView.MODE_INDETERMINATE) {
+      for (long t = skipCycles(start, time) + ViewUtil.FRAME_DURATION; t <= time; t += ViewUtil.FRAME_DURATION) {
+        mClockTime = t;
+        updateState(t);
+      }
+    } else {
+      mClockTime = time;
+      updateState(time);
+    }
+    mClockTime = clockTime;
+    mPauseTime = pauseTime;
+
+    invalidateSelf();
+  }
+
   @Override
   public boolean isRunning() {
     return mRunState != RUN_STATE_STOPPED;
@@ -323,11 +1079,36 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
   @Override
   public void scheduleSelf(Runnable what, long when) {
     if (mRunState == RUN_STATE_STOPPED) {
-      mRunState = mInAnimationDuration > 0 ? RUN_STATE_STARTING : RUN_STATE_RUNNING;
+      mRunState = hasInAnimation() ? RUN_STATE_STARTING : RUN_STATE_RUNNING;
     }
     super.scheduleSelf(what, when);
   }
 
+  private final Callback mRenderThreadCallback = new Callback() {
+
+    @Override
+    public void invalidateDrawable(@NonNull Drawable who) {
+      invalidateSelf();
+    }
+
+    @Override
+    public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+      Callback callback = getCallback();
+      if (callback != null) {
+        callback.scheduleDrawable(CircularProgressDrawable.this, what, when);
+      }
+    }
+
+    @Override
+    public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+      Callback callback = getCallback();
+      if (callback != null) {
+        callback.unscheduleDrawable(CircularProgressDrawable.this, what);
+      }
+    }
+
+  };
+
   private final Runnable mUpdater = new Runnable() {
 
     @Override
@@ -337,54 +1118,100 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
 
   };
 
-  private void update() {
+  void update() {
+    boolean traced = TraceUtil.isEnabled();
+    if (traced) {
+      TraceUtil.beginSection(TraceUtil.updateSection(mProgressMode, mRunState));
+      TraceUtil.onTick();
+    }
+    long updateStart = mFrameStats != null ? System.nanoTime() : 0;
+    long tickTime = now();
+    try {
+      updateFrame();
+    } finally {
+      if (traced) {
+        TraceUtil.endSection();
+      }
+    }
+
+    if (mFrameStats != null) {
+      long interval = mLastTickTime >= 0 ? tickTime - mLastTickTime : -1;
+      long duration = System.nanoTime() - updateStart;
+      long target = getFrameDuration();
+      mFrameStats.recordTick(interval, target, duration);
+      FrameStats.global().recordTick(interval, target, duration);
+      mLastTickTime = tickTime;
+    }
+  }
+
+  private void updateFrame() {
+    long curTime = now();
+    updateState(curTime);
+
+    if (mRunState == RUN_STATE_STOPPING && curTime - mLastRunStateTime > mOutAnimationDuration) {
+      stop(false);
+      return;
+    }
+
+    if (isRunning() && !isPaused()) {
+      scheduleSelf(mUpdater, clockTime() + getFrameDuration());
+    }
+
+    invalidateSelf();
+  }
+
+  /**
+   * Rotation since the last reset, derived from the long time base rather than accumulated per
+   * tick, so it stays exact however long the animation runs.
+   *
+   * @param restart wrap every rotate duration, otherwise stop at a full turn.
+   */
+  private float getRotation(long curTime, boolean restart) {
+    if (mRotateDuration <= 0) {
+      return 0;
+    }
+
+    long elapsed = curTime - mRotationStartTime;
+    elapsed = restart ? elapsed % mRotateDuration : Math.min(elapsed, mRotateDuration);
+    float rotation = elapsed * 360f / mRotateDuration;
+    return mReverse ? -rotation : rotation;
+  }
+
+  private static float normalizeAngle(float angle) {
+    angle %= 360;
+    return angle < 0 ? angle + 360 : angle;
+  }
+
+  private void updateState(long curTime) {
     switch (mProgressMode) {
       case ProgressView.MODE_DETERMINATE:
-        updateDeterminate();
+        updateDeterminate(curTime);
         break;
       case ProgressView.MODE_INDETERMINATE:
-        updateIndeterminate();
+        updateIndeterminate(curTime);
         break;
     }
   }
 
-  private void updateDeterminate() {
-    long curTime = SystemClock.uptimeMillis();
-    float rotateOffset = (((curTime - mLastUpdateTime) * 360f) / mRotateDuration);
-    if (mReverse) {
-      rotateOffset = -rotateOffset;
-    }
+  private void updateDeterminate(long curTime) {
     mLastUpdateTime = curTime;
+    applyPendingProgress(curTime);
 
-    mStartAngle += rotateOffset;
-    if (mAutomaticallyRestart) {
-      mStartAngle %= 360;
+    if (mAutomaticallyRestart || !mKeepDeterminateProgress) {
+      mStartAngle = (mInitialAngle + getRotation(curTime, true)) % 360;
+    } else {
+      // the determinate arc is full past a whole turn, keep it from growing any further
+      mStartAngle = Math.max(-360, Math.min(360, mInitialAngle + getRotation(curTime, false)));
     }
     if (mRunState == RUN_STATE_STARTING) {
       if (curTime - mLastRunStateTime > mInAnimationDuration) {
         mRunState = RUN_STATE_RUNNING;
       }
-    } else if (mRunState == RUN_STATE_STOPPING) {
-      if (curTime - mLastRunStateTime > mOutAnimationDuration) {
-        stop(false);
-        return;
-      }
     }
-
-    if (isRunning()) {
-      scheduleSelf(mUpdater, SystemClock.uptimeMillis() + ViewUtil.FRAME_DURATION);
-    }
-
-    invalidateSelf();
   }
 
-  private void updateIndeterminate() {
+  private void updateIndeterminate(long curTime) {
     //update animation
-    long curTime = SystemClock.uptimeMillis();
-    float rotateOffset = (curTime - mLastUpdateTime) * 360f / mRotateDuration;
-    if (mReverse) {
-      rotateOffset = -rotateOffset;
-    }
     mLastUpdateTime = curTime;
 
     switch (mProgressState) {
@@ -392,14 +1219,12 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
         if (mTransformDuration <= 0) {
           mSweepAngle = mReverse ? -mMinSweepAngle : mMinSweepAngle;
           mProgressState = PROGRESS_STATE_KEEP_STRETCH;
-          mStartAngle += rotateOffset;
           mLastProgressStateTime = curTime;
         } else {
           float value = (curTime - mLastProgressStateTime) / (float) mTransformDuration;
           float maxAngle = mReverse ? -mMaxSweepAngle : mMaxSweepAngle;
           float minAngle = mReverse ? -mMinSweepAngle : mMinSweepAngle;
 
-          mStartAngle += rotateOffset;
           mSweepAngle = mTransformInterpolator.getInterpolation(value) * (maxAngle - minAngle) + minAngle;
 
           if (value > 1f) {
@@ -410,8 +1235,6 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
         }
         break;
       case PROGRESS_STATE_KEEP_STRETCH:
-        mStartAngle += rotateOffset;
-
         if (curTime - mLastProgressStateTime > mKeepDuration) {
           mProgressState = PROGRESS_STATE_SHRINK;
           mLastProgressStateTime = curTime;
@@ -421,7 +1244,6 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
         if (mTransformDuration <= 0) {
           mSweepAngle = mReverse ? -mMinSweepAngle : mMinSweepAngle;
           mProgressState = PROGRESS_STATE_KEEP_SHRINK;
-          mStartAngle += rotateOffset;
           mLastProgressStateTime = curTime;
           mStrokeColorIndex = (mStrokeColorIndex + 1) % mStrokeColors.length;
         } else {
@@ -430,7 +1252,7 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
           float minAngle = mReverse ? -mMinSweepAngle : mMinSweepAngle;
 
           float newSweepAngle = (1f - mTransformInterpolator.getInterpolation(value)) * (maxAngle - minAngle) + minAngle;
-          mStartAngle += rotateOffset + mSweepAngle - newSweepAngle;
+          mAngleOffset = normalizeAngle(mAngleOffset + mSweepAngle - newSweepAngle);
           mSweepAngle = newSweepAngle;
 
           if (value > 1f) {
@@ -442,8 +1264,6 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
         }
         break;
       case PROGRESS_STATE_KEEP_SHRINK:
-        mStartAngle += rotateOffset;
-
         if (curTime - mLastProgressStateTime > mKeepDuration) {
           mProgressState = PROGRESS_STATE_STRETCH;
           mLastProgressStateTime = curTime;
@@ -451,6 +1271,10 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
         break;
     }
 
+    if (mProgressState != PROGRESS_STATE_HIDE) {
+      mStartAngle = normalizeAngle(mInitialAngle + getRotation(curTime, true) + mAngleOffset);
+    }
+
     if (mRunState == RUN_STATE_STARTING) {
       if (curTime - mLastRunStateTime > mInAnimationDuration) {
         mRunState = RUN_STATE_RUNNING;
@@ -459,21 +1283,55 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
           mProgressState = PROGRESS_STATE_STRETCH;
         }
       }
-    } else if (mRunState == RUN_STATE_STOPPING) {
-      if (curTime - mLastRunStateTime > mOutAnimationDuration) {
-        stop(false);
-        return;
-      }
     }
+  }
 
-    if (isRunning()) {
-      scheduleSelf(mUpdater, SystemClock.uptimeMillis() + ViewUtil.FRAME_DURATION);
+  /**
+   * What a frame of the animation is drawn from, see {@link #saveAnimationState()}.
+   */
+  static class AnimationState {
+    int progressState;
+    long stateTime;
+    long rotationTime;
+    float startAngle;
+    float sweepAngle;
+    float angleOffset;
+    int strokeColorIndex;
+
+    AnimationState() {
     }
 
-    invalidateSelf();
+    AnimationState(Parcel in) {
+      progressState = in.readInt();
+      stateTime = in.readLong();
+      rotationTime = in.readLong();
+      startAngle = in.readFloat();
+      sweepAngle = in.readFloat();
+      angleOffset = in.readFloat();
+      strokeColorIndex = in.readInt();
+    }
+
+    void writeToParcel(Parcel out) {
+      out.writeInt(progressState);
+      out.writeLong(stateTime);
+      out.writeLong(rotationTime);
+      out.writeFloat(startAngle);
+      out.writeFloat(sweepAngle);
+      out.writeFloat(angleOffset);
+      out.writeInt(strokeColorIndex);
+    }
   }
 
   public static class Builder {
+    // the timeline baked into R.drawable.cpd_render_thread_progress, it matches the default style,
+    // its geometry only rings whose stroke is a twelfth of their size
+    private static final float RENDER_THREAD_MIN_SWEEP_ANGLE = 1;
+    private static final float RENDER_THREAD_MAX_SWEEP_ANGLE = 270;
+    private static final int RENDER_THREAD_ROTATE_DURATION = 1000;
+    private static final int RENDER_THREAD_TRANSFORM_DURATION = 600;
+    private static final int RENDER_THREAD_KEEP_DURATION = 200;
+
+    private Context mContext;
     private int mPadding;
     private float mInitialAngle;
     private float mMaxSweepAngle;
@@ -493,14 +1351,21 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
     private boolean mKeepDeterminateProgress;
     private int mCircleBackgroundColor;
     private int mCircleInsideColor;
+    private int mStrokeSecondaryColor;
     private boolean mAutomaticallyRestart;
     private boolean mInverted;
+    private boolean mRenderThreadPreset;
+    private boolean mGradientStroke;
+    private int mRenderTier;
+    private int mLiteRingMaxSize;
+    private TrackShape mTrackShape;
 
     public Builder(Context context, int defStyleRes) {
       this(context, null, 0, defStyleRes);
     }
 
     public Builder(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+      mContext = context;
       TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.CircularProgressDrawable, defStyleAttr, defStyleRes);
       int resId;
 
@@ -526,6 +1391,7 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
       inverted(a.getBoolean(R.styleable.CircularProgressDrawable_cpd_inverted, false));
       circleBackgraondColor(a.getColor(R.styleable.CircularProgressDrawable_cpd_circleBackgroundColor, 0));
       circleInsideColor(a.getInt(R.styleable.CircularProgressDrawable_android_background, context.getResources().getColor(android.R.color.transparent)));
+      strokeSecondaryColor(a.getColor(R.styleable.CircularProgressDrawable_cpd_strokeSecondaryColor, 0));
       transformDuration(a.getInteger(R.styleable.CircularProgressDrawable_cpd_transformDuration, context.getResources().getInteger(android.R.integer.config_mediumAnimTime)));
       keepDuration(a.getInteger(R.styleable.CircularProgressDrawable_cpd_keepDuration, context.getResources().getInteger(android.R.integer.config_shortAnimTime)));
       if ((resId = a.getResourceId(R.styleable.CircularProgressDrawable_cpd_transformInterpolator, 0)) != 0) {
@@ -544,6 +1410,10 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
       }
       inStepPercent(a.getFloat(R.styleable.CircularProgressDrawable_cpd_inStepPercent, 0.5f));
       outAnimDuration(a.getInteger(R.styleable.CircularProgressDrawable_cpd_outAnimDuration, context.getResources().getInteger(android.R.integer.config_mediumAnimTime)));
+      renderThreadPreset(a.getBoolean(R.styleable.CircularProgressDrawable_cpd_renderThreadPreset, false));
+      gradientStroke(a.getBoolean(R.styleable.CircularProgressDrawable_cpd_gradientStroke, false));
+      renderTier(a.getInteger(R.styleable.CircularProgressDrawable_cpd_renderTier, RENDER_TIER_AUTO));
+      liteRingMaxSize(a.getDimensionPixelSize(R.styleable.CircularProgressDrawable_cpd_liteRingMaxSize, ThemeUtil.dpToPx(context, 32)));
       a.recycle();
     }
 
@@ -560,10 +1430,66 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
         mTransformInterpolator = new DecelerateInterpolator();
       }
 
+      int renderTier = mRenderTier;
+      if (renderTier == RENDER_TIER_AUTO && isLowRamDevice()) {
+        renderTier = RENDER_TIER_LITE;
+      }
+
+      Drawable renderThreadDrawable = null;
+      if (mRenderThreadPreset && canRunOnRenderThread()) {
+        renderThreadDrawable = createRenderThreadDrawable();
+      }
+
       return new CircularProgressDrawable(mPadding, mInitialAngle, mMaxSweepAngle, mMinSweepAngle, mStrokeSize,
           mStrokeColors, mReverse, mRotateDuration, mTransformDuration, mKeepDuration,
           mTransformInterpolator, mProgressMode, mInAnimationDuration, mInStepPercent, mInColors, mOutAnimationDuration,
-          mKeepDeterminateProgress, mAutomaticallyRestart, mCircleBackgroundColor, mInverted, mCircleInsideColor);
+          mKeepDeterminateProgress, mAutomaticallyRestart, mCircleBackgroundColor, mInverted, mCircleInsideColor,
+          renderThreadDrawable, mGradientStroke, renderTier, mLiteRingMaxSize, mTrackShape,
+          mStrokeSecondaryColor);
+    }
+
+    /**
+     * The vector animation can't be parameterized at runtime, so only configurations matching
+     * its baked timeline and its plain ring are translated. Everything else keeps the
+     * {@link #mUpdater} loop, so does a stroke size not matching the bounds once they are known.
+     */
+    private boolean canRunOnRenderThread() {
+      return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+          && mContext != null
+          && mProgressMode == ProgressView.MODE_INDETERMINATE
+          && mStrokeColors.length == 1
+          && !mReverse
+          && mInitialAngle == 0
+          && mMinSweepAngle == RENDER_THREAD_MIN_SWEEP_ANGLE
+          && mMaxSweepAngle == RENDER_THREAD_MAX_SWEEP_ANGLE
+          && mRotateDuration == RENDER_THREAD_ROTATE_DURATION
+          && mTransformDuration == RENDER_THREAD_TRANSFORM_DURATION
+          && mKeepDuration == RENDER_THREAD_KEEP_DURATION
+          && mTransformInterpolator instanceof DecelerateInterpolator
+          && mTrackShape == null
+          && !mGradientStroke
+          && Color.alpha(mCircleBackgroundColor) == 0
+          && Color.alpha(mCircleInsideColor) == 0;
+    }
+
+    private boolean isLowRamDevice() {
+      if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT || mContext == null) {
+        return false;
+      }
+
+      ActivityManager am = (ActivityManager) mContext.getSystemService(Context.ACTIVITY_SERVICE);
+      return am != null && am.isLowRamDevice();
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private Drawable createRenderThreadDrawable() {
+      Drawable drawable = mContext.getDrawable(R.drawable.cpd_render_thread_progress);
+      if (drawable == null) {
+        return null;
+      }
+      drawable = drawable.mutate();
+      drawable.setTint(mStrokeColors[0]);
+      return drawable;
     }
 
     public Builder padding(int padding) {
@@ -600,6 +1526,11 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
       return this;
     }
 
+    public Builder strokeSecondaryColor(int strokeSecondaryColor) {
+      mStrokeSecondaryColor = strokeSecondaryColor;
+      return this;
+    }
+
     public Builder automaticallyRestart(boolean automaticallyRestart) {
       mAutomaticallyRestart = automaticallyRestart;
       return this;
@@ -669,5 +1600,54 @@ public class CircularProgressDrawable extends Drawable implements Animatable {
       mOutAnimationDuration = duration;
       return this;
     }
+
+    /**
+     * Opt-in preset which plays the indeterminate animation as a fixed AnimatedVectorDrawable on
+     * API 21+, so it keeps spinning while the UI thread is blocked. The vector only matches the
+     * default timeline with one stroke color, no track or inside color, and a stroke of a twelfth
+     * of the ring size; anything else (including the default style's 15dp stroke on the usual
+     * view sizes) falls back to the regular renderer, as do later {@code setStrokeSize},
+     * multi-color {@code setStrokeColors} or {@code setTrackShape} calls. Use
+     * {@link CircularProgressDrawable#isRenderThreadAnimated()} to tell whether it engaged.
+     */
+    public Builder renderThreadPreset(boolean renderThreadPreset) {
+      mRenderThreadPreset = renderThreadPreset;
+      return this;
+    }
+
+    /**
+     * Stroke with a sweep gradient of the stroke colors which turns with the arc, instead of
+     * cycling through the colors.
+     */
+    public Builder gradientStroke(boolean gradientStroke) {
+      mGradientStroke = gradientStroke;
+      return this;
+    }
+
+    /**
+     * {@link #RENDER_TIER_AUTO} picks {@link #RENDER_TIER_LITE} on low-RAM devices or when the
+     * first frames are slow, the other tiers are fixed.
+     */
+    public Builder renderTier(int tier) {
+      mRenderTier = tier;
+      return this;
+    }
+
+    /**
+     * Rings smaller than this, in px, use cheaper strokes in {@link #RENDER_TIER_LITE}.
+     */
+    public Builder liteRingMaxSize(int size) {
+      mLiteRingMaxSize = size;
+      return this;
+    }
+
+    /**
+     * Draw along a shaped track, e.g. a {@link RoundRectTrackShape}, instead of a circle.
+     * The in-animation ring stack is skipped for shaped tracks.
+     */
+    public Builder trackShape(TrackShape trackShape) {
+      mTrackShape = trackShape;
+      return this;
+    }
   }
 }
@@ -0,0 +1,137 @@
+package com.github.runly.circularprogressview;
+
+/**
+ * Frame counters of {@link CircularProgressDrawable}s, enabled per drawable with
+ * {@link CircularProgressDrawable#setFrameStatsEnabled(boolean)}. The process-wide totals of all
+ * enabled drawables are in {@link #globalSnapshot()}.
+ * <p>
+ * Recording only touches primitive fields, take a {@link #snapshot()} to read the numbers.
+ */
+public class FrameStats {
+  /**
+   * Buckets of {@link #getTickIntervalHistogram()}: tick interval in frames of
+   * {@link ViewUtil#FRAME_DURATION}, the last bucket collects everything longer.
+   */
+  public static final int TICK_INTERVAL_BUCKETS = 8;
+  /**
+   * Buckets of {@link #getFrameTimeHistogram()}: draw time in whole ms, the last bucket
+   * collects everything longer.
+   */
+  public static final int FRAME_TIME_BUCKETS = 16;
+
+  private static final FrameStats GLOBAL = new FrameStats();
+
+  private long ticks;
+  private long framesDrawn;
+  private long lateTicks;
+  private long updateTimeNanos;
+  private long drawTimeNanos;
+  private long animatedTimeMillis;
+  private final int[] tickIntervalHistogram = new int[TICK_INTERVAL_BUCKETS];
+  private final int[] frameTimeHistogram = new int[FRAME_TIME_BUCKETS];
+
+  /**
+   * The live process-wide instance, recorded into from the UI and render threads.
+   */
+  static FrameStats global() {
+    return GLOBAL;
+  }
+
+  /**
+   * @return a snapshot of the process-wide totals of all drawables with frame stats enabled.
+   */
+  public static FrameStats globalSnapshot() {
+    return GLOBAL.snapshot();
+  }
+
+  /**
+   * @param intervalMillis time since the previous tick, or a negative value for the first one.
+   * @param targetMillis   the interval the tick was scheduled for.
+   */
+  synchronized void recordTick(long intervalMillis, long targetMillis, long durationNanos) {
+    ticks++;
+    updateTimeNanos += durationNanos;
+    if (intervalMillis < 0) {
+      return;
+    }
+
+    animatedTimeMillis += intervalMillis;
+    // a tick later than half a frame missed the frame it was scheduled for
+    if (intervalMillis > targetMillis + ViewUtil.FRAME_DURATION / 2) {
+      lateTicks++;
+    }
+    int frames = (int) ((intervalMillis + ViewUtil.FRAME_DURATION / 2) / ViewUtil.FRAME_DURATION);
+    tickIntervalHistogram[Math.min(frames, TICK_INTERVAL_BUCKETS - 1)]++;
+  }
+
+  synchronized void recordDraw(long durationNanos) {
+    framesDrawn++;
+    drawTimeNanos += durationNanos;
+    int millis = (int) Math.min(durationNanos / 1000000, FRAME_TIME_BUCKETS - 1);
+    frameTimeHistogram[millis]++;
+  }
+
+  public synchronized FrameStats snapshot() {
+    FrameStats stats = new FrameStats();
+    stats.ticks = ticks;
+    stats.framesDrawn = framesDrawn;
+    stats.lateTicks = lateTicks;
+    stats.updateTimeNanos = updateTimeNanos;
+    stats.drawTimeNanos = drawTimeNanos;
+    stats.animatedTimeMillis = animatedTimeMillis;
+    System.arraycopy(tickIntervalHistogram, 0, stats.tickIntervalHistogram, 0, TICK_INTERVAL_BUCKETS);
+    System.arraycopy(frameTimeHistogram, 0, stats.frameTimeHistogram, 0, FRAME_TIME_BUCKETS);
+    return stats;
+  }
+
+  public synchronized void reset() {
+    ticks = 0;
+    framesDrawn = 0;
+    lateTicks = 0;
+    updateTimeNanos = 0;
+    drawTimeNanos = 0;
+    animatedTimeMillis = 0;
+    for (int i = 0; i < TICK_INTERVAL_BUCKETS; i++) {
+      tickIntervalHistogram[i] = 0;
+    }
+    for (int i = 0; i < FRAME_TIME_BUCKETS; i++) {
+      frameTimeHistogram[i] = 0;
+    }
+  }
+
+  public long getTicks() {
+    return ticks;
+  }
+
+  public long getFramesDrawn() {
+    return framesDrawn;
+  }
+
+  /**
+   * Ticks which came more than half a frame later than scheduled, {@link ViewUtil#FRAME_DURATION}
+   * or twice that in {@link CircularProgressDrawable#RENDER_TIER_LITE}.
+   */
+  public long getLateTicks() {
+    return lateTicks;
+  }
+
+  public long getUpdateTimeNanos() {
+    return updateTimeNanos;
+  }
+
+  public long getDrawTimeNanos() {
+    return drawTimeNanos;
+  }
+
+  public long getAnimatedTimeMillis() {
+    return animatedTimeMillis;
+  }
+
+  public int[] getTickIntervalHistogram() {
+    return tickIntervalHistogram;
+  }
+
+  public int[] getFrameTimeHistogram() {
+    return frameTimeHistogram;
+  }
+}
@@ -0,0 +1,231 @@
+package com.github.runly.circularprogressview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Renders a {@link CircularProgressDrawable} into pooled bitmaps for {@code RemoteViews}, e.g.
+ * notifications and app widgets.
+ * <p>
+ * Progress updates are coalesced and published at most {@code maxFramesPerSecond} times per
+ * second, frames which would draw the same pixels as the last published one are skipped.
+ * The renderer owns the drawable, don't attach it to a view.
+ * <p>
+ * {@link #setProgress(int)}, {@link #setSecondaryProgress(int)} and {@link #requestFrame()} may
+ * be called from any thread, e.g. the one receiving a download. The other methods and the
+ * listener run on the main thread.
+ */
+public class ProgressBitmapRenderer {
+  private static final int POOL_SIZE = 2;
+
+  private final CircularProgressDrawable mDrawable;
+  private final OnFrameListener mListener;
+  private final Handler mHandler;
+  private final Bitmap[] mBitmaps;
+  private final Canvas mCanvas;
+  private final long mMinFrameInterval;
+  private final float mAngleStep;
+  private final int[] mFrameState = new int[CircularProgressDrawable.FRAME_STATE_SIZE];
+  private final int[] mPublishedFrameState = new int[CircularProgressDrawable.FRAME_STATE_SIZE];
+  // guards the fields shared with setProgress() and requestFrame() below
+  private final Object mLock = new Object();
+
+  private int mBitmapIndex;
+  private boolean mHasPublished;
+  private long mLastPublishTime;
+  private boolean mPublishPending;
+  private boolean mProgressPending;
+  private int mPendingProgress;
+  private boolean mSecondaryProgressPending;
+  private int mPendingSecondaryProgress;
+
+  public interface OnFrameListener {
+    /**
+     * Called on the main thread with a frame to publish. The bitmap is reused for a later frame,
+     * hand it over synchronously (e.g. {@code RemoteViews.setImageViewBitmap} followed by
+     * {@code NotificationManager.notify}) and don't keep a reference.
+     */
+    void onFrame(Bitmap bitmap);
+  }
+
+  public ProgressBitmapRenderer(CircularProgressDrawable drawable, int width, int height,
+                                int maxFramesPerSecond, OnFrameListener listener) {
+    mDrawable = drawable;
+    mListener = listener;
+    mHandler = new Handler(Looper.getMainLooper());
+    mMinFrameInterval = 1000 / Math.max(1, maxFramesPerSecond);
+
+    mBitmaps = new Bitmap[POOL_SIZE];
+    for (int i = 0; i < POOL_SIZE; i++) {
+      mBitmaps[i] = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+    mCanvas = new Canvas();
+
+    mDrawable.setCallback(null);
+    mDrawable.setBounds(0, 0, width, height);
+    // one pixel along the ring, smaller angle changes don't change the rendered pixels
+    mAngleStep = (float) (360 / (Math.PI * Math.max(1, Math.min(width, height))));
+  }
+
+  /**
+   * Sets the determinate progress of the next published frame, clamped to 0..100 like
+   * {@link CircularProgressDrawable#setProgress(int)}.
+   */
+  public void setProgress(int progress) {
+    if (mDrawable.getProgressMode() != ProgressView.MODE_DETERMINATE) {
+      throw new IllegalStateException("Set progress is allowed only in determinate progress views");
+    }
+
+    synchronized (mLock) {
+      mPendingProgress = Math.max(0, Math.min(100, progress));
+      mProgressPending = true;
+    }
+    requestFrame();
+  }
+
+  /**
+   * Sets the secondary progress of the next published frame, clamped to 0..100.
+   */
+  public void setSecondaryProgress(int secondaryProgress) {
+    if (mDrawable.getProgressMode() != ProgressView.MODE_DETERMINATE) {
+      throw new IllegalStateException("Set progress is allowed only in determinate progress views");
+    }
+
+    synchronized (mLock) {
+      mPendingSecondaryProgress = Math.max(0, Math.min(100, secondaryProgress));
+      mSecondaryProgressPending = true;
+    }
+    requestFrame();
+  }
+
+  public void start() {
+    mDrawable.start();
+    requestFrame();
+  }
+
+  public void stop() {
+    mDrawable.stop();
+    requestFrame();
+  }
+
+  /**
+   * Publishes a frame at the current time, no sooner than the maximum frame rate allows, e.g. to
+   * advance a running indeterminate drawable. Calls made while a frame is pending collapse into
+   * that frame.
+   */
+  public void requestFrame() {
+    synchronized (mLock) {
+      if (mPublishPending) {
+        return;
+      }
+      mPublishPending = true;
+
+      long now = SystemClock.uptimeMillis();
+      long publishTime = mHasPublished ? Math.max(now, mLastPublishTime + mMinFrameInterval) : now;
+      mHandler.postAtTime(mPublisher, publishTime);
+    }
+  }
+
+  /**
+   * Renders the drawable at {@code uptimeMillis} into a pooled bitmap.
+   *
+   * @return the bitmap, or null when it would draw the same pixels as the last published frame.
+   */
+  public Bitmap render(long uptimeMillis) {
+    mDrawable.setClockTime(uptimeMillis);
+    try {
+      int progress = -1;
+      int secondaryProgress = -1;
+      boolean hasPublished;
+      synchronized (mLock) {
+        if (mProgressPending) {
+          mProgressPending = false;
+          progress = mPendingProgress;
+        }
+        if (mSecondaryProgressPending) {
+          mSecondaryProgressPending = false;
+          secondaryProgress = mPendingSecondaryProgress;
+        }
+        hasPublished = mHasPublished;
+      }
+      // applied by the update below, without resetting the animation
+      if (progress >= 0) {
+        mDrawable.setProgress(progress);
+      }
+      if (secondaryProgress >= 0) {
+        mDrawable.setSecondaryProgress(secondaryProgress);
+      }
+      mDrawable.update();
+
+      mDrawable.getFrameState(mAngleStep, mFrameState);
+      if (hasPublished && mDrawable.isFrameStateStable() && isSameFrame()) {
+        return null;
+      }
+
+      mBitmapIndex = (mBitmapIndex + 1) % POOL_SIZE;
+      Bitmap bitmap = mBitmaps[mBitmapIndex];
+      bitmap.eraseColor(Color.TRANSPARENT);
+      mCanvas.setBitmap(bitmap);
+      mDrawable.draw(mCanvas);
+      mCanvas.setBitmap(null);
+
+      System.arraycopy(mFrameState, 0, mPublishedFrameState, 0, mFrameState.length);
+      synchronized (mLock) {
+        mHasPublished = true;
+      }
+      return bitmap;
+    } finally {
+      mDrawable.setClockTime(-1);
+    }
+  }
+
+  /**
+   * Drops pending frames and frees the pooled bitmaps, the renderer can't be used afterwards.
+   */
+  public void release() {
+    synchronized (mLock) {
+      mHandler.removeCallbacks(mPublisher);
+      mPublishPending = false;
+    }
+    for (Bitmap bitmap : mBitmaps) {
+      bitmap.recycle();
+    }
+  }
+
+  private boolean isSameFrame() {
+    for (int i = 0; i < mFrameState.length; i++) {
+      if (mFrameState[i] != mPublishedFrameState[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private final Runnable mPublisher = new Runnable() {
+
+    @Override
+    public void run() {
+      synchronized (mLock) {
+        mPublishPending = false;
+      }
+      long now = SystemClock.uptimeMillis();
+      Bitmap bitmap = render(now);
+      if (bitmap != null) {
+        synchronized (mLock) {
+          mLastPublishTime = now;
+        }
+        mListener.onFrame(bitmap);
+      }
+
+      // keep in- and out-animations going until they settle, at the throttled rate
+      if (!mDrawable.isFrameStateStable()) {
+        requestFrame();
+      }
+    }
+
+  };
+}
@@ -0,0 +1,368 @@
+package com.github.runly.circularprogressview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+import android.graphics.SurfaceTexture;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+import android.view.TextureView;
+import android.view.View;
+
+/**
+ * A {@link ProgressView} variant that updates and draws its {@link CircularProgressDrawable}
+ * on a dedicated render thread, so the spinner stays smooth while the main thread is blocked.
+ * <p>
+ * The drawable is owned by the render thread: start/stop/setProgress and the setters below
+ * may be called from the main thread, they are handed over to the render thread.
+ */
+public class ProgressTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+  private final Object surfaceLock = new Object();
+  private final Object threadLock = new Object();
+  private CircularProgressDrawable circularProgressDrawable;
+  // guarded by threadLock, read without it on the render thread
+  private HandlerThread renderThread;
+  private volatile Handler renderHandler;
+  // guarded by threadLock
+  private boolean isQuitPending = false;
+  private int quitGeneration = 0;
+  private boolean isStart = false;
+  private boolean isAutoStart = true;
+
+  // guarded by surfaceLock
+  private boolean isSurfaceAvailable = false;
+  // only accessed on the render thread
+  private boolean isFramePending = false;
+
+  public ProgressTextureView(Context context, AttributeSet attrs) {
+    super(context, attrs);
+    init(context, attrs);
+  }
+
+  protected void init(Context context, AttributeSet attrs) {
+    applyStyle(context, attrs);
+    circularProgressDrawable.setCallback(renderCallback);
+    setOpaque(false);
+    setSurfaceTextureListener(this);
+  }
+
+  /**
+   * set progress's style
+   */
+  protected void applyStyle(Context context, AttributeSet attrs) {
+    circularProgressDrawable = new CircularProgressDrawable.Builder(context, attrs, 0, R.style.CircularProgress)
+        .build();
+  }
+
+  /**
+   * The drawable is owned by the render thread while attached, change it through the setters of
+   * this view rather than directly.
+   */
+  public CircularProgressDrawable getCircularProgressDrawable() {
+    return circularProgressDrawable;
+  }
+
+  /**
+   * Calls are coalesced into the next frame, like {@link ProgressView#setProgress(int)}.
+   */
+  public void setProgress(final int progress) {
+    postToRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        circularProgressDrawable.setProgress(progress);
+      }
+    });
+  }
+
+  public void setSecondaryProgress(final int secondaryProgress) {
+    postToRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        circularProgressDrawable.setSecondaryProgress(secondaryProgress);
+      }
+    });
+  }
+
+  public void setAutoStart(boolean autoStart) {
+    isAutoStart = autoStart;
+  }
+
+  /**
+   * set the stroke size with px
+   */
+  public void setStrokeSizePx(final int px) {
+    postToRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        circularProgressDrawable.setStrokeSize(px);
+      }
+    });
+  }
+
+  /**
+   * set the stroke size with dp
+   */
+  public void setStrokeSizeDp(Context context, float dp) {
+    setStrokeSizePx(dipToPixels(context, dp));
+  }
+
+  /**
+   * set the colors with int[]
+   */
+  public void setStrokeColors(final int[] strokeColors) {
+    postToRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        circularProgressDrawable.setStrokeColors(strokeColors);
+      }
+    });
+  }
+
+  /**
+   * Start showing progress.
+   */
+  public void start() {
+    isStart = true;
+    post(new Runnable() {
+      @Override
+      public void run() {
+        circularProgressDrawable.start();
+      }
+    });
+  }
+
+  /**
+   * Stop showing progress.
+   */
+  public void stop() {
+    if (!isStart) {
+      return;
+    }
+    isStart = false;
+    post(new Runnable() {
+      @Override
+      public void run() {
+        circularProgressDrawable.stop();
+      }
+    });
+  }
+
+  public boolean isStarted() {
+    return isStart;
+  }
+
+  @Override
+  protected void onAttachedToWindow() {
+    super.onAttachedToWindow();
+    startRenderThread();
+    if (isAutoStart || isStart) {
+      start();
+    }
+  }
+
+  @Override
+  protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+    super.onVisibilityChanged(changedView, visibility);
+    if (visibility != VISIBLE) {
+      stop();
+    } else if (isAutoStart) {
+      start();
+    }
+  }
+
+  @Override
+  protected void onDetachedFromWindow() {
+    post(new Runnable() {
+      @Override
+      public void run() {
+        // no out-animation, there is no surface left to draw it on
+        circularProgressDrawable.stop(false);
+      }
+    });
+    stopRenderThread();
+    super.onDetachedFromWindow();
+  }
+
+  @Override
+  public void onSurfaceTextureAvailable(SurfaceTexture surface, final int width, final int height) {
+    synchronized (surfaceLock) {
+      isSurfaceAvailable = true;
+    }
+    onSurfaceTextureSizeChanged(surface, width, height);
+  }
+
+  @Override
+  public void onSurfaceTextureSizeChanged(SurfaceTexture surface, final int width, final int height) {
+    postToRenderThread(new Runnable() {
+      @Override
+      public void run() {
+        circularProgressDrawable.setBounds(0, 0, width, height);
+        drawFrame();
+      }
+    });
+  }
+
+  @Override
+  public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+    // waits for a frame in flight, the render thread never locks a released surface
+    synchronized (surfaceLock) {
+      isSurfaceAvailable = false;
+    }
+    return true;
+  }
+
+  @Override
+  public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+  }
+
+  private void startRenderThread() {
+    synchronized (threadLock) {
+      if (renderThread != null) {
+        // attached again before the old thread drained, it stays the only owner of the drawable
+        isQuitPending = false;
+        quitGeneration++;
+        return;
+      }
+      renderThread = new HandlerThread("ProgressTextureView", Process.THREAD_PRIORITY_DISPLAY);
+      renderThread.start();
+      renderHandler = new Handler(renderThread.getLooper());
+    }
+  }
+
+  /**
+   * The thread keeps owning the drawable until it ran everything queued before it quits, only
+   * then the handler is cleared and the caller gets the drawable back.
+   */
+  private void stopRenderThread() {
+    synchronized (threadLock) {
+      if (renderThread == null) {
+        return;
+      }
+      isQuitPending = true;
+      postQuit();
+    }
+  }
+
+  // called with threadLock held, a newer quit replaces the queued one
+  private void postQuit() {
+    final int generation = ++quitGeneration;
+    final HandlerThread thread = renderThread;
+    renderHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (threadLock) {
+          if (!isQuitPending || generation != quitGeneration) {
+            return;
+          }
+          isQuitPending = false;
+          isFramePending = false;
+          renderHandler = null;
+          renderThread = null;
+          // drops only what the drawable queued itself, e.g. a frame of the stop
+          thread.quit();
+        }
+      }
+    });
+  }
+
+  /**
+   * @return false without a render thread, the runnable didn't run.
+   */
+  private boolean post(Runnable runnable) {
+    synchronized (threadLock) {
+      if (renderHandler == null) {
+        return false;
+      }
+      renderHandler.post(runnable);
+      if (isQuitPending) {
+        // keep the quit behind the runnable, quit() would drop it
+        postQuit();
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Without a render thread (not attached) the caller owns the drawable and runs it directly.
+   */
+  private void postToRenderThread(Runnable runnable) {
+    if (!post(runnable)) {
+      runnable.run();
+    }
+  }
+
+  private void drawFrame() {
+    isFramePending = false;
+    synchronized (surfaceLock) {
+      if (!isSurfaceAvailable) {
+        return;
+      }
+
+      Canvas canvas = lockCanvas();
+      if (canvas == null) {
+        return;
+      }
+
+      try {
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        circularProgressDrawable.draw(canvas);
+      } finally {
+        unlockCanvasAndPost(canvas);
+      }
+    }
+  }
+
+  private final Runnable frameDrawer = new Runnable() {
+
+    @Override
+    public void run() {
+      drawFrame();
+    }
+
+  };
+
+  // runs on the render thread, the drawable's updater and invalidations never touch the UI thread
+  private final Drawable.Callback renderCallback = new Drawable.Callback() {
+
+    @Override
+    public void invalidateDrawable(@NonNull Drawable who) {
+      Handler handler = renderHandler;
+      if (!isFramePending && handler != null) {
+        isFramePending = true;
+        handler.post(frameDrawer);
+      }
+    }
+
+    @Override
+    public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+      Handler handler = renderHandler;
+      if (handler != null) {
+        handler.postAtTime(what, who, when);
+      }
+    }
+
+    @Override
+    public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+      Handler handler = renderHandler;
+      if (handler != null) {
+        handler.removeCallbacks(what, who);
+      }
+    }
+
+  };
+
+  /**
+   * convert dip tp px
+   */
+  private int dipToPixels(Context context, float dipValue) {
+    DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+    return (int) (TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, dipValue, metrics) + 0.5f);
+  }
+}
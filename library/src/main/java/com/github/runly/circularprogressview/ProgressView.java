@@ -1,18 +1,45 @@
 package com.github.runly.circularprogressview;
 
 import android.content.Context;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.TypedValue;
 import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.ProgressBar;
 
 public class ProgressView extends View {
   public static final int MODE_DETERMINATE = 0;
   public static final int MODE_INDETERMINATE = 1;
+  private static final int DEFAULT_SHOW_DELAY = 500;
+  private static final int DEFAULT_MIN_SHOW_TIME = 500;
+  private static final int DEFAULT_ACCESSIBILITY_STEP = 10;
+  private static final int DEFAULT_ACCESSIBILITY_INTERVAL = 1000;
+  private static final int MAX_PROGRESS = 100;
   private CircularProgressDrawable circularProgressDrawable;
   private boolean isStart = false;
   private boolean isAutoStart = true;
+  private int showDelay = DEFAULT_SHOW_DELAY;
+  private int minShowTime = DEFAULT_MIN_SHOW_TIME;
+  private long showStartTime = -1;
+  private boolean isShowPending = false;
+  private boolean isHidePending = false;
+  private int progress = -1;
+  private int secondaryProgress = -1;
+  private CircularProgressDrawable.AnimationState restoredState;
+  private AccessibilityManager accessibilityManager;
+  private int accessibilityStep = DEFAULT_ACCESSIBILITY_STEP;
+  private int accessibilityInterval = DEFAULT_ACCESSIBILITY_INTERVAL;
+  private int announcedProgress = -1;
+  private long lastAccessibilityEventTime = -1;
+  private boolean isAccessibilityEventPending = false;
 
   public ProgressView(Context context, AttributeSet attrs) {
     super(context, attrs);
@@ -21,6 +48,7 @@ public class ProgressView extends View {
 
   protected void init(Context context, AttributeSet attrs) {
     applyStyle(context, attrs);
+    accessibilityManager = (AccessibilityManager) context.getSystemService(Context.ACCESSIBILITY_SERVICE);
   }
 
   /**
@@ -36,8 +64,34 @@ public class ProgressView extends View {
     return circularProgressDrawable;
   }
 
+  /**
+   * A {@code wrap_content} view takes the drawable's intrinsic size instead of filling the parent.
+   */
+  @Override
+  protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    CircularProgressDrawable drawable = getCircularProgressDrawable();
+    int width = Math.max(drawable.getIntrinsicWidth(), getSuggestedMinimumWidth());
+    int height = Math.max(drawable.getIntrinsicHeight(), getSuggestedMinimumHeight());
+    setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+  }
+
+  /**
+   * Redraws only, never requests a layout. Frequent calls are coalesced into the next frame.
+   */
   public void setProgress(int progress) {
-    getCircularProgressDrawable().setInitialProgress(progress);
+    getCircularProgressDrawable().setProgress(progress);
+    // the drawable clamps too, report only what is drawn
+    this.progress = Math.max(0, Math.min(MAX_PROGRESS, progress));
+    onAccessibilityProgressChanged();
+  }
+
+  /**
+   * set the buffered progress, drawn with {@code cpd_strokeSecondaryColor} in the same frame as the
+   * progress
+   */
+  public void setSecondaryProgress(int secondaryProgress) {
+    getCircularProgressDrawable().setSecondaryProgress(secondaryProgress);
+    this.secondaryProgress = Math.max(0, Math.min(MAX_PROGRESS, secondaryProgress));
   }
 
   public void setAutoStart(boolean autoStart) {
@@ -45,7 +99,8 @@ public class ProgressView extends View {
   }
 
   /**
-   * set the stroke size with px
+   * set the stroke size with px, redraws only: a {@code wrap_content} view keeps its measured size
+   * until the next layout
    */
   public void setStrokeSizePx(int px) {
     getCircularProgressDrawable().setStrokeSize(px);
@@ -66,14 +121,149 @@ public class ProgressView extends View {
     getCircularProgressDrawable().setStrokeColors(strokeColors);
   }
 
+  /**
+   * set how long {@link #show()} waits before the progress appears, in ms
+   */
+  public void setShowDelay(int showDelay) {
+    this.showDelay = showDelay;
+  }
+
+  /**
+   * set how long the progress stays visible at least once {@link #show()} made it appear, in ms
+   */
+  public void setMinShowTime(int minShowTime) {
+    this.minShowTime = minShowTime;
+  }
+
+  /**
+   * set the change of progress worth announcing to accessibility services, smaller changes are
+   * announced only when they reach 0 or the maximum
+   */
+  public void setAccessibilityStep(int accessibilityStep) {
+    this.accessibilityStep = accessibilityStep;
+  }
+
+  /**
+   * set the minimum time between two accessibility events, in ms, a change within it is
+   * announced once it has passed
+   */
+  public void setAccessibilityInterval(int accessibilityInterval) {
+    this.accessibilityInterval = accessibilityInterval;
+  }
+
+  @Override
+  public void onInitializeAccessibilityEvent(AccessibilityEvent event) {
+    super.onInitializeAccessibilityEvent(event);
+    event.setClassName(ProgressBar.class.getName());
+    if (progress >= 0) {
+      event.setItemCount(MAX_PROGRESS);
+      event.setCurrentItemIndex(progress);
+    }
+  }
+
+  @Override
+  public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+    super.onInitializeAccessibilityNodeInfo(info);
+    info.setClassName(ProgressBar.class.getName());
+    if (progress >= 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+      info.setRangeInfo(AccessibilityNodeInfo.RangeInfo.obtain(AccessibilityNodeInfo.RangeInfo.RANGE_TYPE_INT,
+          0, MAX_PROGRESS, progress));
+    }
+  }
+
+  /**
+   * Sends at most one event per interval, the latest value worth announcing. Any number of
+   * {@link #setProgress(int)} calls cost one pending callback, and nothing while accessibility is
+   * off.
+   */
+  private void onAccessibilityProgressChanged() {
+    if (accessibilityManager == null || !accessibilityManager.isEnabled() || isAccessibilityEventPending
+        || !isWorthAnnouncing()) {
+      return;
+    }
+
+    long sinceLastEvent = SystemClock.uptimeMillis() - lastAccessibilityEventTime;
+    if (lastAccessibilityEventTime < 0 || sinceLastEvent >= accessibilityInterval) {
+      accessibilityEventSender.run();
+    } else {
+      isAccessibilityEventPending = true;
+      postDelayed(accessibilityEventSender, accessibilityInterval - sinceLastEvent);
+    }
+  }
+
+  private boolean isWorthAnnouncing() {
+    if (progress == announcedProgress) {
+      return false;
+    }
+    return announcedProgress < 0 || Math.abs(progress - announcedProgress) >= accessibilityStep
+        || progress == 0 || progress == MAX_PROGRESS;
+  }
+
+  private final Runnable accessibilityEventSender = new Runnable() {
+
+    @Override
+    public void run() {
+      isAccessibilityEventPending = false;
+      if (!isWorthAnnouncing()) {
+        return;
+      }
+
+      announcedProgress = progress;
+      lastAccessibilityEventTime = SystemClock.uptimeMillis();
+      sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_SELECTED);
+    }
+
+  };
+
   @Override
   protected void onAttachedToWindow() {
     super.onAttachedToWindow();
-    if (isAutoStart) {
+    if (isAutoStart || restoredState != null) {
       start();
     }
   }
 
+  @Override
+  protected Parcelable onSaveInstanceState() {
+    SavedState ss = new SavedState(super.onSaveInstanceState());
+    CircularProgressDrawable drawable = getCircularProgressDrawable();
+    ss.isStart = isStart && drawable.isRunning();
+    ss.progress = progress;
+    ss.secondaryProgress = secondaryProgress;
+    if (ss.isStart) {
+      ss.animationState = drawable.saveAnimationState();
+    }
+    return ss;
+  }
+
+  /**
+   * A running progress continues from the saved frame, without replaying the in-animation.
+   */
+  @Override
+  protected void onRestoreInstanceState(Parcelable state) {
+    if (!(state instanceof SavedState)) {
+      super.onRestoreInstanceState(state);
+      return;
+    }
+
+    SavedState ss = (SavedState) state;
+    super.onRestoreInstanceState(ss.getSuperState());
+    CircularProgressDrawable drawable = getCircularProgressDrawable();
+    if (ss.progress >= 0) {
+      setProgress(ss.progress);
+    }
+    if (ss.secondaryProgress >= 0) {
+      setSecondaryProgress(ss.secondaryProgress);
+    }
+    if (ss.animationState != null) {
+      if (drawable.isRunning()) {
+        drawable.restoreAnimationState(ss.animationState);
+      } else {
+        restoredState = ss.animationState;
+      }
+    }
+  }
+
   @Override
   protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
     super.onVisibilityChanged(changedView, visibility);
@@ -89,6 +279,12 @@ public class ProgressView extends View {
 
   @Override
   protected void onDetachedFromWindow() {
+    removeCallbacks(delayedShow);
+    removeCallbacks(delayedHide);
+    removeCallbacks(accessibilityEventSender);
+    isShowPending = false;
+    isHidePending = false;
+    isAccessibilityEventPending = false;
     if (isStart && getVisibility() == View.VISIBLE) {
       stop();
     }
@@ -99,8 +295,14 @@ public class ProgressView extends View {
    * Start showing progress.
    */
   public void start() {
-    if (getCircularProgressDrawable() != null) {
-      getCircularProgressDrawable().start();
+    CircularProgressDrawable drawable = getCircularProgressDrawable();
+    if (drawable != null) {
+      if (restoredState != null && !drawable.isRenderThreadAnimated()) {
+        drawable.restoreAnimationState(restoredState);
+      } else {
+        drawable.start();
+      }
+      restoredState = null;
       isStart = true;
     }
   }
@@ -115,6 +317,128 @@ public class ProgressView extends View {
     }
   }
 
+  /**
+   * Halt the progress at its current phase, e.g. while it is covered, without an out-animation.
+   */
+  public void pause() {
+    getCircularProgressDrawable().pause();
+  }
+
+  /**
+   * Continue a paused progress from where it halted, without an in-animation.
+   */
+  public void resume() {
+    getCircularProgressDrawable().resume();
+  }
+
+  /**
+   * Show the progress after the show delay, unless {@link #hide()} is called first. Toggling
+   * show/hide quickly collapses into a single transition, use it with {@code setAutoStart(false)}.
+   */
+  public void show() {
+    removeCallbacks(delayedHide);
+    isHidePending = false;
+    if (isStart || isShowPending) {
+      return;
+    }
+
+    if (showDelay <= 0) {
+      delayedShow.run();
+    } else {
+      isShowPending = true;
+      postDelayed(delayedShow, showDelay);
+    }
+  }
+
+  /**
+   * Hide the progress once it was visible for the minimum show time. A pending {@link #show()}
+   * is cancelled without drawing a frame.
+   */
+  public void hide() {
+    removeCallbacks(delayedShow);
+    isShowPending = false;
+    if (!isStart || isHidePending) {
+      return;
+    }
+
+    long shownTime = SystemClock.uptimeMillis() - showStartTime;
+    if (showStartTime < 0 || shownTime >= minShowTime) {
+      delayedHide.run();
+    } else {
+      isHidePending = true;
+      postDelayed(delayedHide, minShowTime - shownTime);
+    }
+  }
+
+  private final Runnable delayedShow = new Runnable() {
+
+    @Override
+    public void run() {
+      isShowPending = false;
+      showStartTime = SystemClock.uptimeMillis();
+      start();
+    }
+
+  };
+
+  private final Runnable delayedHide = new Runnable() {
+
+    @Override
+    public void run() {
+      isHidePending = false;
+      showStartTime = -1;
+      stop();
+    }
+
+  };
+
+  static class SavedState extends BaseSavedState {
+    boolean isStart;
+    int progress;
+    int secondaryProgress;
+    CircularProgressDrawable.AnimationState animationState;
+
+    SavedState(Parcelable superState) {
+      super(superState);
+    }
+
+    private SavedState(Parcel in) {
+      super(in);
+      isStart = in.readInt() != 0;
+      progress = in.readInt();
+      secondaryProgress = in.readInt();
+      if (in.readInt() != 0) {
+        animationState = new CircularProgressDrawable.AnimationState(in);
+      }
+    }
+
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+      super.writeToParcel(out, flags);
+      out.writeInt(isStart ? 1 : 0);
+      out.writeInt(progress);
+      out.writeInt(secondaryProgress);
+      out.writeInt(animationState != null ? 1 : 0);
+      if (animationState != null) {
+        animationState.writeToParcel(out);
+      }
+    }
+
+    public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+
+      @Override
+      public SavedState createFromParcel(Parcel in) {
+        return new SavedState(in);
+      }
+
+      @Override
+      public SavedState[] newArray(int size) {
+        return new SavedState[size];
+      }
+
+    };
+  }
+
   /**
    * convert dip tp px
    */
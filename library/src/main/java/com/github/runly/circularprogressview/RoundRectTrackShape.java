@@ -0,0 +1,38 @@
+package com.github.runly.circularprogressview;
+
+import android.graphics.Path;
+import android.graphics.RectF;
+
+/**
+ * Rounded rectangle track, the corner radius is clamped to half the shorter side so a large
+ * radius gives a pill.
+ */
+public class RoundRectTrackShape implements CircularProgressDrawable.TrackShape {
+  private final float mCornerRadius;
+  private final RectF mCorner = new RectF();
+
+  public RoundRectTrackShape(float cornerRadius) {
+    mCornerRadius = cornerRadius;
+  }
+
+  @Override
+  public void buildTrack(RectF bounds, Path path) {
+    float r = Math.max(0, Math.min(mCornerRadius, Math.min(bounds.width(), bounds.height()) / 2));
+    float d = r * 2;
+
+    path.moveTo(bounds.right, bounds.centerY());
+    path.lineTo(bounds.right, bounds.bottom - r);
+    mCorner.set(bounds.right - d, bounds.bottom - d, bounds.right, bounds.bottom);
+    path.arcTo(mCorner, 0, 90, false);
+    path.lineTo(bounds.left + r, bounds.bottom);
+    mCorner.set(bounds.left, bounds.bottom - d, bounds.left + d, bounds.bottom);
+    path.arcTo(mCorner, 90, 90, false);
+    path.lineTo(bounds.left, bounds.top + r);
+    mCorner.set(bounds.left, bounds.top, bounds.left + d, bounds.top + d);
+    path.arcTo(mCorner, 180, 90, false);
+    path.lineTo(bounds.right - r, bounds.top);
+    mCorner.set(bounds.right - d, bounds.top, bounds.right, bounds.top + d);
+    path.arcTo(mCorner, 270, 90, false);
+    path.close();
+  }
+}
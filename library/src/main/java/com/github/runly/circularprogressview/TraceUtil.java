@@ -0,0 +1,125 @@
+package com.github.runly.circularprogressview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in systrace/Perfetto sections and counters for the progress drawables. Disabled by default,
+ * every call site checks {@link #isEnabled()} first so there is no cost while it stays off.
+ */
+public class TraceUtil {
+  // Trace.TRACE_TAG_APP, the tag of Trace.beginSection()
+  private static final long TRACE_TAG_APP = 1L << 12;
+  private static final String COUNTER_RUNNING = "CircularProgressDrawable running";
+  private static final String COUNTER_TICKS = "CircularProgressDrawable ticks/s";
+  private static final String[] MODES = {"determinate", "indeterminate"};
+  private static final String[] RUN_STATES = {"stopped", "starting", "started", "running", "stopping"};
+  private static final String[][] UPDATE_SECTIONS = sections("update");
+  private static final String[][] DRAW_SECTIONS = sections("draw");
+
+  private static volatile boolean enabled;
+  private static Method traceCounter;
+  private static boolean isTraceCounterResolved;
+  private static final AtomicInteger runningCount = new AtomicInteger();
+  private static long tickWindowStart;
+  private static int tickCount;
+
+  /**
+   * Enable the trace sections and counters, available from API 18.
+   */
+  public static void setEnabled(boolean enabled) {
+    TraceUtil.enabled = enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    if (TraceUtil.enabled) {
+      counter(COUNTER_RUNNING, runningCount.get());
+    }
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  static String updateSection(int mode, int runState) {
+    return UPDATE_SECTIONS[mode][runState];
+  }
+
+  static String drawSection(int mode, int runState) {
+    return DRAW_SECTIONS[mode][runState];
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+  static void beginSection(String name) {
+    Trace.beginSection(name);
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+  static void endSection() {
+    Trace.endSection();
+  }
+
+  /**
+   * Tracks the number of running drawables, call when a drawable starts (+1) or stops (-1).
+   */
+  static void onRunningChanged(int delta) {
+    int count = runningCount.addAndGet(delta);
+    if (count == 0) {
+      resetTicks();
+    }
+    if (enabled) {
+      counter(COUNTER_RUNNING, count);
+    }
+  }
+
+  /**
+   * The tick rate is only written on ticks, without running drawables it would keep showing the
+   * last rate.
+   */
+  private static synchronized void resetTicks() {
+    tickWindowStart = 0;
+    tickCount = 0;
+    if (enabled) {
+      counter(COUNTER_TICKS, 0);
+    }
+  }
+
+  static synchronized void onTick() {
+    tickCount++;
+    long now = SystemClock.uptimeMillis();
+    if (now - tickWindowStart >= 1000) {
+      counter(COUNTER_TICKS, tickWindowStart == 0 ? 0 : (int) (tickCount * 1000 / (now - tickWindowStart)));
+      tickWindowStart = now;
+      tickCount = 0;
+    }
+  }
+
+  /**
+   * Trace.setCounter() is API 29, older platforms have the same counter as a hidden method.
+   */
+  private static void counter(String name, int value) {
+    try {
+      if (!isTraceCounterResolved) {
+        isTraceCounterResolved = true;
+        traceCounter = Trace.class.getMethod("traceCounter", long.class, String.class, int.class);
+      }
+      if (traceCounter != null) {
+        traceCounter.invoke(null, TRACE_TAG_APP, name, value);
+      }
+    } catch (Exception ex) {
+
+    }
+  }
+
+  private static String[][] sections(String name) {
+    String[][] sections = new String[MODES.length][RUN_STATES.length];
+    for (int i = 0; i < MODES.length; i++) {
+      for (int j = 0; j < RUN_STATES.length; j++) {
+        sections[i][j] = "CircularProgressDrawable#" + name + " " + MODES[i] + " " + RUN_STATES[j];
+      }
+    }
+    return sections;
+  }
+}
@@ -0,0 +1,266 @@
+package com.github.runly.circularprogressview;
+
+import android.view.animation.Interpolator;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Frame loop budget of {@link CircularProgressDrawable} on a simulated clock.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class FrameLoopTest {
+  private static final int SIZE = 200;
+  private static final int OUT_DURATION = 400;
+  private static final long FRAMES_PER_SECOND = 1000 / ViewUtil.FRAME_DURATION;
+
+  private CircularProgressDrawable.Builder builder(int progressMode) {
+    return new CircularProgressDrawable.Builder(RuntimeEnvironment.application, R.style.CircularProgress)
+        .progressMode(progressMode)
+        .renderTier(CircularProgressDrawable.RENDER_TIER_FULL)
+        .inAnimDuration(0)
+        .outAnimDuration(OUT_DURATION);
+  }
+
+  @Test
+  public void indeterminate_schedulesOneUpdateAndOneFramePerTick() throws Exception {
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_INDETERMINATE).build(), SIZE);
+    host.drawable.start();
+    host.advanceBy(1000);
+    host.resetCounts();
+
+    host.advanceBy(1000);
+
+    assertInRange(host.scheduled, FRAMES_PER_SECOND - 2, FRAMES_PER_SECOND + 1);
+    assertEquals(host.scheduled, host.invalidated);
+    assertEquals(host.invalidated, host.drawn);
+  }
+
+  @Test
+  public void determinate_schedulesOneUpdateAndOneFramePerTick() throws Exception {
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_DETERMINATE).build(), SIZE);
+    host.drawable.start();
+    host.drawable.setInitialProgress(25);
+    host.advanceBy(1000);
+    host.resetCounts();
+
+    host.advanceBy(1000);
+
+    assertInRange(host.scheduled, FRAMES_PER_SECOND - 2, FRAMES_PER_SECOND + 1);
+    assertEquals(host.scheduled, host.invalidated);
+  }
+
+  @Test
+  public void neverStarted_schedulesNothing() throws Exception {
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_INDETERMINATE).build(), SIZE);
+
+    host.advanceBy(10000);
+
+    assertEquals(0, host.scheduled);
+    assertEquals(0, host.invalidated);
+  }
+
+  @Test
+  public void stopped_schedulesNothing() throws Exception {
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_INDETERMINATE).build(), SIZE);
+    host.drawable.start();
+    host.advanceBy(500);
+    host.drawable.stop();
+    host.advanceBy(OUT_DURATION + 2 * ViewUtil.FRAME_DURATION);
+    assertFalse(host.drawable.isRunning());
+    assertFalse(host.hasPendingUpdate());
+    host.resetCounts();
+
+    host.advanceBy(10000);
+
+    assertEquals(0, host.scheduled);
+    assertEquals(0, host.invalidated);
+  }
+
+  @Test
+  public void inAnimation_finishesWithinItsDuration() throws Exception {
+    int inDuration = 300;
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_INDETERMINATE)
+        .inAnimDuration(inDuration)
+        .build(), SIZE);
+    host.drawable.start();
+    assertFalse(host.drawable.isFrameStateStable());
+
+    host.advanceBy(inDuration + 2 * ViewUtil.FRAME_DURATION);
+
+    assertTrue(host.drawable.isFrameStateStable());
+  }
+
+  @Test
+  public void indeterminateOutAnimation_finishesWithinItsDuration() throws Exception {
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_INDETERMINATE).build(), SIZE);
+    host.drawable.start();
+    host.advanceBy(500);
+    host.drawable.stop();
+    int ticks = host.scheduled;
+
+    host.advanceBy(OUT_DURATION + 2 * ViewUtil.FRAME_DURATION);
+
+    assertFalse(host.drawable.isRunning());
+    assertInRange(host.scheduled - ticks, 0, OUT_DURATION / ViewUtil.FRAME_DURATION + 1);
+  }
+
+  @Test
+  public void determinateOutAnimation_finishesWithinItsDuration() throws Exception {
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_DETERMINATE).build(), SIZE);
+    host.drawable.start();
+    host.drawable.setInitialProgress(60);
+    host.advanceBy(500);
+    host.drawable.stop();
+
+    host.advanceBy(OUT_DURATION + 2 * ViewUtil.FRAME_DURATION);
+
+    assertFalse(host.drawable.isRunning());
+  }
+
+  @Test
+  public void indeterminateSteadyState_allocatesNothing() throws Exception {
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_INDETERMINATE)
+        .strokeColors(0xFF0000FF, 0xFFFF0000, 0xFF00FF00)
+        .build(), SIZE);
+    host.drawable.start();
+    host.advanceBy(5000);
+
+    assertEquals(0, allocatedBytesDuring(host, 10000));
+  }
+
+  @Test
+  public void determinateSteadyState_allocatesNothing() throws Exception {
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_DETERMINATE).build(), SIZE);
+    host.drawable.start();
+    host.drawable.setInitialProgress(40);
+    host.advanceBy(5000);
+
+    assertEquals(0, allocatedBytesDuring(host, 10000));
+  }
+
+  @Test
+  public void seekHoursAhead_replaysAtMostOneCycle() throws Exception {
+    int transformDuration = 400;
+    int keepDuration = 200;
+    long hours = 72 * 60 * 60 * 1000L;
+    CountingInterpolator interpolator = new CountingInterpolator();
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_INDETERMINATE)
+        .transformDuration(transformDuration)
+        .keepDuration(keepDuration)
+        .transformInterpolator(interpolator)
+        .build(), SIZE);
+    host.advanceBy(hours);
+    host.drawable.start();
+
+    host.drawable.seekTo(hours);
+
+    long cycleFrames = 2 * (transformDuration + keepDuration) / ViewUtil.FRAME_DURATION + 1;
+    assertInRange(interpolator.calls, 1, cycleFrames);
+    assertEquals(hours, host.drawable.getPlayTime());
+  }
+
+  @Test
+  public void seek_drawsTheFrameOfARunningDrawable() throws Exception {
+    assertSeekMatchesRunning(builder(ProgressView.MODE_INDETERMINATE)
+        .strokeColors(0xFF0000FF, 0xFFFF0000, 0xFF00FF00), 40000);
+  }
+
+  @Test
+  public void seekWithoutTransform_drawsTheFrameOfARunningDrawable() throws Exception {
+    assertSeekMatchesRunning(builder(ProgressView.MODE_INDETERMINATE)
+        .transformDuration(0)
+        .keepDuration(0), 40000);
+  }
+
+  @Test(timeout = 1000)
+  public void seekHoursAheadWithoutTransform_staysBounded() throws Exception {
+    long hours = 72 * 60 * 60 * 1000L;
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_INDETERMINATE)
+        .transformDuration(0)
+        .keepDuration(0)
+        .build(), SIZE);
+    host.advanceBy(hours);
+    host.drawable.start();
+
+    host.drawable.seekTo(hours);
+
+    assertEquals(hours, host.drawable.getPlayTime());
+  }
+
+  @Test
+  public void determinateSeekHoursAhead_matchesTheTime() throws Exception {
+    long hours = 72 * 60 * 60 * 1000L;
+    SimulatedFrameHost host = new SimulatedFrameHost(builder(ProgressView.MODE_DETERMINATE)
+        .automaticallyRestart(true)
+        .build(), SIZE);
+    host.advanceBy(hours);
+    host.drawable.setInitialProgress(25);
+    host.drawable.start();
+
+    host.drawable.seekTo(hours);
+
+    assertEquals(hours, host.drawable.getPlayTime());
+  }
+
+  private static void assertSeekMatchesRunning(CircularProgressDrawable.Builder builder, long playTime) {
+    SimulatedFrameHost running = new SimulatedFrameHost(builder.build(), SIZE);
+    running.drawFrames = false;
+    running.drawable.start();
+    running.advanceBy(playTime);
+
+    SimulatedFrameHost seeking = new SimulatedFrameHost(builder.build(), SIZE);
+    seeking.advanceBy(playTime);
+    seeking.drawable.start();
+    seeking.drawable.seekTo(playTime);
+
+    // hundredths of a degree, the closed form and the per-tick sums round differently
+    int[] expected = new int[CircularProgressDrawable.FRAME_STATE_SIZE];
+    int[] actual = new int[CircularProgressDrawable.FRAME_STATE_SIZE];
+    running.drawable.getFrameState(0.01f, expected);
+    seeking.drawable.getFrameState(0.01f, actual);
+    assertEquals(expected[0], actual[0]);
+    int startDiff = Math.abs(expected[1] - actual[1]);
+    assertInRange(Math.min(startDiff, 36000 - startDiff), 0, 10);
+    assertInRange(actual[2], expected[2] - 10, expected[2] + 10);
+    assertEquals(expected[3], actual[3]);
+  }
+
+  private static long allocatedBytesDuring(SimulatedFrameHost host, long millis) {
+    long before = allocatedBytes();
+    // the measurement itself may allocate, e.g. the id array of getThreadAllocatedBytes()
+    long overhead = allocatedBytes() - before;
+    before = allocatedBytes();
+    host.advanceBy(millis);
+    return allocatedBytes() - before - overhead;
+  }
+
+  private static long allocatedBytes() {
+    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static class CountingInterpolator implements Interpolator {
+    int calls;
+
+    @Override
+    public float getInterpolation(float input) {
+      calls++;
+      return input;
+    }
+  }
+
+  private static void assertInRange(long value, long min, long max) {
+    assertTrue(value + " not in [" + min + ", " + max + "]", value >= min && value <= max);
+  }
+}
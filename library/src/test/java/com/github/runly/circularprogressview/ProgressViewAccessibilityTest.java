@@ -0,0 +1,95 @@
+package com.github.runly.circularprogressview;
+
+import android.app.Activity;
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.ViewGroup;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Accessibility events of a {@link ProgressView} stay bounded however often the progress changes.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ProgressViewAccessibilityTest {
+  private static final int INTERVAL = 1000;
+
+  private Scheduler scheduler;
+  private CountingProgressView view;
+
+  @Before
+  public void setUp() throws Exception {
+    ShadowLooper.pauseMainLooper();
+    scheduler = Robolectric.getForegroundThreadScheduler();
+
+    ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).create();
+    AttributeSet attrs = Robolectric.buildAttributeSet()
+        .addAttribute(R.attr.pv_progressMode, "determinate")
+        .build();
+    AccessibilityManager manager = (AccessibilityManager) controller.get().getSystemService(Context.ACCESSIBILITY_SERVICE);
+    shadowOf(manager).setEnabled(true);
+    view = new CountingProgressView(controller.get(), attrs);
+    view.setAutoStart(false);
+    view.setAccessibilityInterval(INTERVAL);
+    controller.get().setContentView(view, new ViewGroup.LayoutParams(100, 100));
+    controller.start().resume().visible();
+    view.events = 0;
+  }
+
+  @Test
+  public void swingingProgress_sendsAtMostOneEventPerInterval() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      view.setProgress(i % 2 == 0 ? 0 : 50);
+      scheduler.advanceBy(1);
+    }
+    scheduler.advanceBy(INTERVAL);
+
+    // one at once, then at most one per interval of the 2 s
+    assertTrue(view.events + " events", view.events >= 1 && view.events <= 3);
+  }
+
+  @Test
+  public void smallSteps_announceTheLatestValue() throws Exception {
+    for (int i = 0; i <= 100; i++) {
+      view.setProgress(i);
+      scheduler.advanceBy(10);
+    }
+    scheduler.advanceBy(INTERVAL);
+
+    assertTrue(view.events + " events", view.events >= 1 && view.events <= 3);
+    assertEquals(100, view.lastAnnounced);
+  }
+
+  static class CountingProgressView extends ProgressView {
+    int events;
+    int lastAnnounced = -1;
+
+    CountingProgressView(Context context, AttributeSet attrs) {
+      super(context, attrs);
+    }
+
+    @Override
+    public void sendAccessibilityEvent(int eventType) {
+      events++;
+      AccessibilityEvent event = AccessibilityEvent.obtain(eventType);
+      onInitializeAccessibilityEvent(event);
+      lastAnnounced = event.getCurrentItemIndex();
+      event.recycle();
+    }
+  }
+}
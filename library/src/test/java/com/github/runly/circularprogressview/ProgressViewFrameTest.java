@@ -0,0 +1,103 @@
+package com.github.runly.circularprogressview;
+
+import android.app.Activity;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Frame budget of an attached {@link ProgressView}, the paused main looper is the simulated clock.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ProgressViewFrameTest {
+  private static final long FRAMES_PER_SECOND = 1000 / ViewUtil.FRAME_DURATION;
+
+  private Scheduler scheduler;
+  private ProgressView view;
+  private CircularProgressDrawable drawable;
+
+  @Before
+  public void setUp() throws Exception {
+    ShadowLooper.pauseMainLooper();
+    scheduler = Robolectric.getForegroundThreadScheduler();
+
+    ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).create();
+    view = new ProgressView(controller.get(), null);
+    view.setAutoStart(false);
+    controller.get().setContentView(view, new ViewGroup.LayoutParams(100, 100));
+    drawable = view.getCircularProgressDrawable();
+    drawable.setFrameStatsEnabled(true);
+    // cold frames on the JVM are slow, keep the automatic tier from halving the tick rate
+    drawable.setRenderTier(CircularProgressDrawable.RENDER_TIER_FULL);
+    controller.start().resume().visible();
+    scheduler.advanceBy(ViewUtil.FRAME_DURATION);
+  }
+
+  @Test
+  public void running_ticksOncePerFrame() throws Exception {
+    view.setShowDelay(0);
+    view.show();
+    scheduler.advanceBy(1000);
+    long ticks = drawable.getFrameStats().getTicks();
+
+    scheduler.advanceBy(1000);
+
+    long ticksPerSecond = drawable.getFrameStats().getTicks() - ticks;
+    assertTrue(ticksPerSecond + " ticks/s", ticksPerSecond >= FRAMES_PER_SECOND - 4 && ticksPerSecond <= FRAMES_PER_SECOND + 1);
+  }
+
+  @Test
+  public void hideBeforeShowDelay_schedulesNothing() throws Exception {
+    view.setShowDelay(500);
+    view.show();
+    scheduler.advanceBy(200);
+    view.hide();
+
+    scheduler.advanceBy(5000);
+
+    assertFalse(drawable.isRunning());
+    assertEquals(0, drawable.getFrameStats().getTicks());
+    assertEquals(0, drawable.getFrameStats().getFramesDrawn());
+  }
+
+  @Test
+  public void rapidToggles_collapseIntoOneTransition() throws Exception {
+    view.setShowDelay(500);
+    view.setMinShowTime(500);
+    for (int i = 0; i < 10; i++) {
+      view.show();
+      scheduler.advanceBy(20);
+      view.hide();
+      scheduler.advanceBy(20);
+    }
+    view.show();
+    scheduler.advanceBy(600);
+    assertTrue(drawable.isRunning());
+
+    view.hide();
+    view.show();
+    view.hide();
+    scheduler.advanceBy(100);
+    assertTrue(drawable.isRunning());
+
+    scheduler.advanceBy(5000);
+    assertFalse(drawable.isRunning());
+    long ticks = drawable.getFrameStats().getTicks();
+
+    scheduler.advanceBy(5000);
+    assertEquals(ticks, drawable.getFrameStats().getTicks());
+  }
+}
@@ -0,0 +1,91 @@
+package com.github.runly.circularprogressview;
+
+import android.app.Activity;
+import android.os.Parcelable;
+import android.util.AttributeSet;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Saving and restoring a running {@link ProgressView} across a configuration change.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class ProgressViewStateTest {
+  private static final float ANGLE_STEP = 0.001f;
+
+  private Scheduler scheduler;
+
+  @Before
+  public void setUp() throws Exception {
+    ShadowLooper.pauseMainLooper();
+    scheduler = Robolectric.getForegroundThreadScheduler();
+  }
+
+  @Test
+  public void indeterminateRestore_drawsTheSavedFrame() throws Exception {
+    ProgressView view = attachedView(null, null);
+    view.setShowDelay(0);
+    view.show();
+    // many sweep cycles, each a few ticks longer than its nominal durations
+    scheduler.advanceBy(40000);
+
+    assertRestoresTheFrame(view, null);
+  }
+
+  @Test
+  public void determinateRestore_drawsTheSavedFrame() throws Exception {
+    AttributeSet attrs = Robolectric.buildAttributeSet()
+        .addAttribute(R.attr.pv_progressMode, "determinate")
+        .build();
+    ProgressView view = attachedView(attrs, null);
+    view.setProgress(30);
+    view.setShowDelay(0);
+    view.show();
+    scheduler.advanceBy(1234);
+
+    assertRestoresTheFrame(view, attrs);
+  }
+
+  private void assertRestoresTheFrame(ProgressView view, AttributeSet attrs) {
+    CircularProgressDrawable drawable = view.getCircularProgressDrawable();
+    int[] frame = new int[CircularProgressDrawable.FRAME_STATE_SIZE];
+    drawable.getFrameState(ANGLE_STEP, frame);
+    float startAngle = drawable.getStartAngle();
+
+    ProgressView restored = attachedView(attrs, view.onSaveInstanceState());
+
+    CircularProgressDrawable restoredDrawable = restored.getCircularProgressDrawable();
+    int[] restoredFrame = new int[CircularProgressDrawable.FRAME_STATE_SIZE];
+    restoredDrawable.getFrameState(ANGLE_STEP, restoredFrame);
+    assertTrue(restoredDrawable.isRunning());
+    assertEquals(startAngle, restoredDrawable.getStartAngle(), 0);
+    assertArrayEquals(frame, restoredFrame);
+  }
+
+  private ProgressView attachedView(AttributeSet attrs, Parcelable state) {
+    ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).create();
+    ProgressView view = new ProgressView(controller.get(), attrs);
+    view.setAutoStart(false);
+    if (state != null) {
+      view.onRestoreInstanceState(state);
+    }
+    view.getCircularProgressDrawable().setRenderTier(CircularProgressDrawable.RENDER_TIER_FULL);
+    controller.get().setContentView(view, new ViewGroup.LayoutParams(100, 100));
+    controller.start().resume().visible();
+    return view;
+  }
+}
@@ -0,0 +1,108 @@
+package com.github.runly.circularprogressview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+
+/**
+ * Hosts a {@link CircularProgressDrawable} on a simulated clock: scheduled updates run when the
+ * clock passes their time, every invalidation draws one frame into a canvas that discards it.
+ */
+class SimulatedFrameHost implements Drawable.Callback {
+  static final long START_TIME = 10000;
+
+  final CircularProgressDrawable drawable;
+  final Canvas canvas = new NoOpCanvas();
+  long time = START_TIME;
+  int scheduled;
+  int invalidated;
+  int drawn;
+  /**
+   * Skip drawing while fast-forwarding, updates still run on every tick.
+   */
+  boolean drawFrames = true;
+
+  private Runnable pending;
+  private long pendingTime;
+  private boolean isDirty;
+
+  SimulatedFrameHost(CircularProgressDrawable drawable, int size) {
+    this.drawable = drawable;
+    drawable.setCallback(this);
+    drawable.setBounds(0, 0, size, size);
+    drawable.setClockTime(time);
+  }
+
+  /**
+   * Runs every update scheduled within the next {@code millis} and draws the frames they
+   * invalidate.
+   */
+  void advanceBy(long millis) {
+    long end = time + millis;
+    while (pending != null && pendingTime <= end) {
+      time = pendingTime;
+      drawable.setClockTime(time);
+      Runnable what = pending;
+      pending = null;
+      what.run();
+      drawIfDirty();
+    }
+    time = end;
+    drawable.setClockTime(time);
+    drawIfDirty();
+  }
+
+  boolean hasPendingUpdate() {
+    return pending != null;
+  }
+
+  void resetCounts() {
+    scheduled = 0;
+    invalidated = 0;
+    drawn = 0;
+  }
+
+  private void drawIfDirty() {
+    if (isDirty) {
+      isDirty = false;
+      if (drawFrames) {
+        drawn++;
+        drawable.draw(canvas);
+      }
+    }
+  }
+
+  @Override
+  public void invalidateDrawable(@NonNull Drawable who) {
+    invalidated++;
+    isDirty = true;
+  }
+
+  @Override
+  public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+    scheduled++;
+    pending = what;
+    pendingTime = when;
+  }
+
+  @Override
+  public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+    if (pending == what) {
+      pending = null;
+    }
+  }
+
+  private static class NoOpCanvas extends Canvas {
+
+    @Override
+    public void drawArc(@NonNull RectF oval, float startAngle, float sweepAngle, boolean useCenter, @NonNull Paint paint) {
+    }
+
+    @Override
+    public void drawCircle(float cx, float cy, float radius, @NonNull Paint paint) {
+    }
+
+  }
+}
@@ -0,0 +1,115 @@
+package com.github.runly.circularprogressview;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs spinners for 72 simulated hours of frame ticks and compares the first and the last
+ * minutes: the start angle stays bounded, moves as smoothly and costs the same per frame.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class SoakTest {
+  private static final int SIZE = 200;
+  private static final long SOAK_DURATION = TimeUnit.HOURS.toMillis(72);
+  private static final long WARM_UP = TimeUnit.SECONDS.toMillis(30);
+  private static final long WINDOW = TimeUnit.SECONDS.toMillis(30);
+
+  @Test
+  public void determinate_staysSmoothFor72Hours() throws Exception {
+    CircularProgressDrawable drawable = new CircularProgressDrawable.Builder(RuntimeEnvironment.application, R.style.CircularProgress)
+        .progressMode(ProgressView.MODE_DETERMINATE)
+        .renderTier(CircularProgressDrawable.RENDER_TIER_FULL)
+        .automaticallyRestart(true)
+        .rotateDuration(15000)
+        .build();
+
+    Window[] windows = soak(drawable);
+
+    // constant speed, every frame moves by the same angle
+    assertEquals(0, windows[0].variance, 1e-6);
+    assertEquals(0, windows[1].variance, 1e-6);
+    assertEquals(windows[0].mean, windows[1].mean, 1e-4);
+    assertSteadyCost(windows);
+  }
+
+  @Test
+  public void indeterminate_staysSmoothFor72Hours() throws Exception {
+    CircularProgressDrawable drawable = new CircularProgressDrawable.Builder(RuntimeEnvironment.application, R.style.CircularProgress)
+        .progressMode(ProgressView.MODE_INDETERMINATE)
+        .renderTier(CircularProgressDrawable.RENDER_TIER_FULL)
+        .build();
+
+    Window[] windows = soak(drawable);
+
+    // the stretch/shrink phases differ between the windows, the spread of the motion must not
+    assertEquals(windows[0].mean, windows[1].mean, windows[0].mean * 0.1);
+    assertEquals(windows[0].variance, windows[1].variance, windows[0].variance * 0.25);
+    assertSteadyCost(windows);
+  }
+
+  private static Window[] soak(CircularProgressDrawable drawable) {
+    SimulatedFrameHost host = new SimulatedFrameHost(drawable, SIZE);
+    drawable.start();
+    host.advanceBy(WARM_UP);
+
+    Window first = measure(host);
+    host.drawFrames = false;
+    host.advanceBy(SOAK_DURATION - WARM_UP - 2 * WINDOW);
+    host.drawFrames = true;
+    Window last = measure(host);
+
+    assertTrue(drawable.isRunning());
+    return new Window[] {first, last};
+  }
+
+  private static Window measure(SimulatedFrameHost host) {
+    Window window = new Window();
+    float previous = host.drawable.getStartAngle();
+    double sum = 0;
+    double squareSum = 0;
+    int frames = (int) (WINDOW / ViewUtil.FRAME_DURATION);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < frames; i++) {
+      host.advanceBy(ViewUtil.FRAME_DURATION);
+      float angle = host.drawable.getStartAngle();
+      assertTrue("unbounded angle " + angle, angle >= -360 && angle <= 360);
+
+      double delta = angle - previous;
+      if (delta > 180) {
+        delta -= 360;
+      } else if (delta < -180) {
+        delta += 360;
+      }
+      sum += delta;
+      squareSum += delta * delta;
+      previous = angle;
+    }
+    window.nanosPerFrame = (System.nanoTime() - start) / frames;
+
+    window.mean = sum / frames;
+    window.variance = squareSum / frames - window.mean * window.mean;
+    return window;
+  }
+
+  private static void assertSteadyCost(Window[] windows) {
+    // generous bound, timing on a shared host is noisy, a per-frame cost growing with uptime is not
+    assertTrue(windows[1].nanosPerFrame + " ns vs " + windows[0].nanosPerFrame + " ns",
+        windows[1].nanosPerFrame <= windows[0].nanosPerFrame * 3);
+  }
+
+  private static class Window {
+    double mean;
+    double variance;
+    long nanosPerFrame;
+  }
+}